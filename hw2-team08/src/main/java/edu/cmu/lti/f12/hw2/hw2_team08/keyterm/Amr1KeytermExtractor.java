@@ -13,11 +13,10 @@ import com.aliasi.chunk.Chunker;
 import com.aliasi.chunk.Chunking;
 import com.aliasi.util.AbstractExternalizable;
 
-import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.CoreNlpPipelinePool;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,42 +31,60 @@ import org.apache.uima.resource.ResourceInitializationException;
 
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.CoreAnnotations.PartOfSpeechAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.util.CoreMap;
 
 /**
  * 
  * @author Andrew Rodriguez (amr1)
  */
-public class Amr1KeytermExtractor extends AbstractKeytermExtractor {
+public class Amr1KeytermExtractor extends CachingKeytermExtractor {
 
-  private StanfordCoreNLP pipeline;
+  // the pipeline itself is borrowed from the shared pool
+  private final Properties props = CoreNlpPipelinePool
+          .annotatorProperties(CoreNlpPipelinePool.POS_ANNOTATORS);
 
   @Override
   public void initialize(UimaContext c) throws ResourceInitializationException {
     super.initialize(c);
     // my initialization
-    Properties props = new Properties();
-    props.put("annotators", "tokenize, ssplit, pos");
-    pipeline = new StanfordCoreNLP(props);
   }
 
   @Override
-  protected List<Keyterm> getKeyterms(String question) {
-    List<Keyterm> keytermList = new ArrayList<Keyterm>();
+  protected List<Keyterm> extractKeyterms(String question) {
+    try {
+      return toKeyterms(question, CoreNlpPipelinePool.getInstance().annotateSentences(props,
+              question));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ArrayList<Keyterm>();
+    }
+  }
 
-    String text = question;
+  /* Tags all questions of the batch in one pass of the pipeline */
+  @Override
+  protected List<List<Keyterm>> extractKeyterms(List<String> questions) {
+    List<List<Keyterm>> result = new ArrayList<List<Keyterm>>(questions.size());
+    try {
+      List<List<List<CoreLabel>>> sentences = CoreNlpPipelinePool.getInstance().annotateBatch(
+              props, questions);
+      for (int i = 0; i < questions.size(); i++) {
+        result.add(toKeyterms(questions.get(i), sentences.get(i)));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (int i = result.size(); i < questions.size(); i++) {
+        result.add(new ArrayList<Keyterm>());
+      }
+    }
+    return result;
+  }
+
+  private List<Keyterm> toKeyterms(String text, List<List<CoreLabel>> sentences) {
+    List<Keyterm> keytermList = new ArrayList<Keyterm>();
 
     Map<Integer, Integer> begin2end = new HashMap<Integer, Integer>();
-    Annotation document = new Annotation(text);
-    pipeline.annotate(document);
-    List<CoreMap> sentences = document.get(SentencesAnnotation.class);
-    for (CoreMap sentence : sentences) {
+    for (List<CoreLabel> sentence : sentences) {
       List<CoreLabel> candidate = new ArrayList<CoreLabel>();
-      for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
+      for (CoreLabel token : sentence) {
         String pos = token.get(PartOfSpeechAnnotation.class);
         if (pos.startsWith("NN") || isAcronym(token.originalText())
                 || likelyBeginning(token.originalText())) {
@@ -95,13 +112,16 @@ public class Amr1KeytermExtractor extends AbstractKeytermExtractor {
 
   }
 
-  String[] likelyWords = new String[] { "chain", "monomer", "codon", "region", "exon", "orf",
-      "cdna", "reporter", "gene", "antibody", "complex", "gene", "product", "mrna", "oligomer",
-      "chemokine", "subunit", "peptide", "message", "transactivator", "homolog", "binding", "site",
-      "enhancer", "element", "allele", "isoform", "intron", "promoter", "operon" };
+  // head nouns such as "gene" or "promoter", see data/keyterm/head-nouns.txt
+  private final KeytermLexicon likelyWords = KeytermLexicon.getInstance(KeytermLexicon.HEAD_NOUNS);
+
+  @Override
+  protected String getFingerprintExtras() {
+    return " headNouns=" + likelyWords.getChecksum();
+  }
 
   private boolean likelyBeginning(String originalText) {
-    return Arrays.asList(likelyWords).contains(originalText);
+    return likelyWords.contains(originalText);
   }
 
   private boolean isAcronym(String originalText) {
@@ -0,0 +1,234 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.keyterm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import edu.cmu.lti.f12.hw2.hw2_team08.util.KeytermCache;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.ResourceLines;
+import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.oaqa.framework.data.Keyterm;
+
+/**
+ * Base class for keyterm extractors whose results are worth keeping between runs. When the
+ * <code>keytermCacheDir</code> parameter is set, the keyterms found for each question are stored
+ * in that directory, keyed by the extractor class, its other parameters and the MD5 hashes of the
+ * files they name, so a later run with the same configuration answers from the cache.
+ *
+ * Models are only loaded, by {@link #loadModels()}, once a question misses the cache, so a run in
+ * which every question hits it never loads them at all.
+ *
+ * With <code>batchSize</code> above 1, a question missing from the cache is extracted together
+ * with the questions following it in <code>questionFile</code> (one <code>id|question</code> per
+ * line, as read by the collection reader) which are not cached yet, up to <code>batchSize</code>
+ * questions in all, see {@link #extractKeyterms(List)}. Their keyterms are cached, in memory if no
+ * cache directory is set, until the collection reader gets to them.
+ */
+public abstract class CachingKeytermExtractor extends AbstractKeytermExtractor {
+
+  public static final String PARAM_CACHE_DIR = "keytermCacheDir";
+
+  public static final String PARAM_BATCH_SIZE = "batchSize";
+
+  public static final String PARAM_QUESTION_FILE = "questionFile";
+
+  private KeytermCache cache = null;
+
+  private int batchSize = 1;
+
+  // the questions of the dataset in collection order, and the index of each
+  private List<String> questions = null;
+
+  private Map<String, Integer> questionIndex = null;
+
+  private volatile boolean modelsLoaded = false;
+
+  // the failure of the model load, rethrown instead of loading the models again
+  private IllegalStateException loadFailure = null;
+
+  @Override
+  public void initialize(UimaContext c) throws ResourceInitializationException {
+    super.initialize(c);
+    String cacheDir = (String) c.getConfigParameterValue(PARAM_CACHE_DIR);
+    if (cacheDir != null) {
+      cache = KeytermCache.open(new File(cacheDir.trim()), fingerprint(c));
+    }
+    Integer batch = (Integer) c.getConfigParameterValue(PARAM_BATCH_SIZE);
+    String questionFile = (String) c.getConfigParameterValue(PARAM_QUESTION_FILE);
+    if (batch != null && batch > 1 && questionFile != null) {
+      batchSize = batch;
+      loadQuestions(questionFile.trim());
+      if (cache == null) {
+        cache = KeytermCache.inMemory();
+      }
+    }
+  }
+
+  private void loadQuestions(String questionFile) throws ResourceInitializationException {
+    questions = new ArrayList<String>();
+    questionIndex = new HashMap<String, Integer>();
+    try {
+      for (String line : ResourceLines.read(questionFile)) {
+        int bar = line.indexOf('|');
+        if (bar > 0) {
+          String question = line.substring(bar + 1).trim();
+          if (!questionIndex.containsKey(question)) {
+            questionIndex.put(question, questions.size());
+          }
+          questions.add(question);
+        }
+      }
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
+  /* Loads the models needed by extractKeyterms; called at most once, before the first call */
+  protected void loadModels() throws ResourceInitializationException {
+  }
+
+  /* Describes what besides the parameters decides the keyterms found, e.g. the lexicons used */
+  protected String getFingerprintExtras() {
+    return "";
+  }
+
+  /* Finds the keyterms of a question which is not in the cache */
+  protected abstract List<Keyterm> extractKeyterms(String question);
+
+  /**
+   * Finds the keyterms of each of the questions, which are not in the cache. Extractors which can
+   * process several questions in one go more cheaply than one by one override this.
+   */
+  protected List<List<Keyterm>> extractKeyterms(List<String> questions) {
+    List<List<Keyterm>> result = new ArrayList<List<Keyterm>>(questions.size());
+    for (String question : questions) {
+      result.add(extractKeyterms(question));
+    }
+    return result;
+  }
+
+  @Override
+  protected List<Keyterm> getKeyterms(String question) {
+    List<String> cached = cache == null ? null : cache.get(question);
+    if (cached != null) {
+      List<Keyterm> keytermList = new ArrayList<Keyterm>(cached.size());
+      for (String keyterm : cached) {
+        keytermList.add(new Keyterm(keyterm));
+      }
+      return keytermList;
+    }
+
+    ensureModelsLoaded();
+    List<String> batch = nextBatch(question);
+    List<List<Keyterm>> results;
+    if (batch.size() > 1) {
+      results = extractKeyterms(batch);
+    } else {
+      results = new ArrayList<List<Keyterm>>(1);
+      results.add(extractKeyterms(question));
+    }
+    if (cache != null) {
+      for (int i = 0; i < batch.size(); i++) {
+        List<String> keyterms = new ArrayList<String>(results.get(i).size());
+        for (Keyterm keyterm : results.get(i)) {
+          keyterms.add(keyterm.getText());
+        }
+        cache.put(batch.get(i), keyterms);
+      }
+    }
+    return results.get(0);
+  }
+
+  /* The question, followed by the next uncached questions of the dataset up to the batch size */
+  private List<String> nextBatch(String question) {
+    List<String> batch = new ArrayList<String>();
+    batch.add(question);
+    Integer index = questionIndex == null ? null : questionIndex.get(question.trim());
+    if (index == null) {
+      return batch;
+    }
+    for (int i = index + 1; i < questions.size() && batch.size() < batchSize; i++) {
+      String next = questions.get(i);
+      if (!batch.contains(next) && !cache.contains(next)) {
+        batch.add(next);
+      }
+    }
+    return batch;
+  }
+
+  /* Loads the models once; if that fails, every later call fails the same way without retrying */
+  private void ensureModelsLoaded() {
+    if (modelsLoaded) {
+      return;
+    }
+    synchronized (this) {
+      if (loadFailure != null) {
+        throw loadFailure;
+      }
+      if (!modelsLoaded) {
+        try {
+          loadModels();
+        } catch (ResourceInitializationException e) {
+          loadFailure = new IllegalStateException("Could not load the models of "
+                  + getClass().getSimpleName(), e);
+          throw loadFailure;
+        } catch (RuntimeException e) {
+          loadFailure = new IllegalStateException("Could not load the models of "
+                  + getClass().getSimpleName(), e);
+          throw loadFailure;
+        }
+        modelsLoaded = true;
+      }
+    }
+  }
+
+  /*
+   * The extractor class, followed by its parameters sorted by name, with the MD5 hash of the
+   * contents of any parameter naming a file. The parameters of the caching itself do not change
+   * the keyterms, so they are left out.
+   */
+  private String fingerprint(UimaContext c) throws ResourceInitializationException {
+    StringBuilder sb = new StringBuilder(getClass().getName()).append(getFingerprintExtras());
+    String[] names = c.getConfigParameterNames();
+    if (names == null) {
+      return sb.toString();
+    }
+    names = names.clone();
+    Arrays.sort(names);
+    for (String name : names) {
+      if (PARAM_CACHE_DIR.equals(name) || PARAM_BATCH_SIZE.equals(name)
+              || PARAM_QUESTION_FILE.equals(name)) {
+        continue;
+      }
+      Object value = c.getConfigParameterValue(name);
+      String text = value instanceof Object[] ? Arrays.toString((Object[]) value) : String
+              .valueOf(value);
+      sb.append('\n').append(name).append('=').append(text);
+      File file = new File(text.trim());
+      if (value instanceof String && file.isFile()) {
+        try {
+          sb.append(" md5=").append(KeytermCache.md5(file));
+        } catch (IOException e) {
+          throw new ResourceInitializationException(e);
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    super.collectionProcessComplete();
+    if (cache != null) {
+      System.out.println(cache);
+    }
+  }
+}
@@ -7,39 +7,30 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.resource.ResourceInitializationException;
 
-import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.CoreNlpPipelinePool;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 import edu.stanford.nlp.ling.CoreAnnotations.PartOfSpeechAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
 import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.util.CoreMap;
 
-public class CombinationKeyterm extends AbstractKeytermExtractor {
-  StanfordCoreNLP pipeline = null;
+public class CombinationKeyterm extends CachingKeytermExtractor {
+  Properties props = CoreNlpPipelinePool.annotatorProperties(CoreNlpPipelinePool.POS_ANNOTATORS);
 
-  Set<String> stoptermsSet = new HashSet<String>();
+  KeytermLexicon stopterms = null;
 
-  Map<String, Integer> termStatMap = new HashMap<String, Integer>();
+  // POS tag -> class: 11 entity, 12 prefix, 13 conjunction, 21 verb
+  KeytermLexicon posClasses = null;
 
   public static final String PARAM_MODELFILE = "model_file";
 
   @Override
   public void initialize(UimaContext c) throws ResourceInitializationException {
     super.initialize(c);
-    init();
   }
 
   public CombinationKeyterm() {
@@ -48,43 +39,58 @@ public class CombinationKeyterm extends AbstractKeytermExtractor {
   }
   
   private void init() {
-    
-    Properties props = new Properties();
-    props.put("annotators", "tokenize, ssplit, pos");
-    pipeline = new StanfordCoreNLP(props);
-    
-    stoptermsSet.add("role");
-    stoptermsSet.add("do");
-    termStatMap.put("NN", 11);  //1 : entity
-    termStatMap.put("NNP", 11); //1 : entity
-    termStatMap.put("NNS", 11);
-    termStatMap.put("JJ", 12);  //2 : prefix
-    termStatMap.put("VBG", 12);
-    termStatMap.put("POS", 13); //3 : conjunction
-    termStatMap.put("VBP", 21);
-    termStatMap.put("VB", 21); 
+    // the pipeline is borrowed from the shared pool on first use
+    stopterms = KeytermLexicon.getInstance(KeytermLexicon.STOP_TERMS);
+    posClasses = KeytermLexicon.getInstance(KeytermLexicon.POS_CLASSES);
+  }
+
+  @Override
+  protected String getFingerprintExtras() {
+    return " stopterms=" + stopterms.getChecksum() + " posClasses=" + posClasses.getChecksum();
+  }
+
+  @Override
+  protected List<Keyterm> extractKeyterms(String text) {
+    try {
+      return toKeyterms(text, CoreNlpPipelinePool.getInstance().annotateSentences(props, text));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ArrayList<Keyterm>();
+    }
   }
 
+  /* Tags all questions of the batch in one pass of the pipeline */
   @Override
-  public List<Keyterm> getKeyterms(String text) {
+  protected List<List<Keyterm>> extractKeyterms(List<String> texts) {
+    List<List<Keyterm>> result = new ArrayList<List<Keyterm>>(texts.size());
+    try {
+      List<List<List<CoreLabel>>> sentences = CoreNlpPipelinePool.getInstance().annotateBatch(
+              props, texts);
+      for (int i = 0; i < texts.size(); i++) {
+        result.add(toKeyterms(texts.get(i), sentences.get(i)));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      for (int i = result.size(); i < texts.size(); i++) {
+        result.add(new ArrayList<Keyterm>());
+      }
+    }
+    return result;
+  }
+
+  private List<Keyterm> toKeyterms(String text, List<List<CoreLabel>> sentences) {
 
     List<Keyterm> keytermList = new ArrayList<Keyterm>();
 
-    Annotation document = new Annotation(text);
-    pipeline.annotate(document);
-    List<CoreMap> sentences = document.get(SentencesAnnotation.class);
-    for (CoreMap sentence : sentences) {
+    for (List<CoreLabel> sentence : sentences) {
       List<Integer> statlist = new ArrayList<Integer>();
       List<Integer> beginList = new ArrayList<Integer>();
       List<Integer> endList = new ArrayList<Integer>();
       List<CoreLabel> candidate = new ArrayList<CoreLabel>();
       int i = 0;
-      for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
+      for (CoreLabel token : sentence) {
         String pos = token.get(PartOfSpeechAnnotation.class);
-        int stat = 0;
-        if (termStatMap.containsKey(pos)) {
-          stat = termStatMap.get(pos);
-        }
+        int stat = posClasses.get(pos, 0);
         statlist.add(stat);
 
         if (stat != 0) {
@@ -105,7 +111,7 @@ public class CombinationKeyterm extends AbstractKeytermExtractor {
       // System.out.println(begin2end.size());
       for (int j = 0; j < beginList.size(); j++) {
         String substring = text.substring(beginList.get(j), endList.get(j));
-        if (!stoptermsSet.contains(substring)) {
+        if (!stopterms.contains(substring)) {
           keytermList.add(new Keyterm(substring));
           System.out.println("--" + substring);
         }
@@ -0,0 +1,65 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.keyterm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.aliasi.chunk.Chunk;
+import com.aliasi.chunk.ConfidenceChunker;
+
+import edu.cmu.lti.oaqa.framework.data.Keyterm;
+
+/**
+ * Keyterms from the n-best chunks of a LingPipe ConfidenceChunker whose confidence reaches a
+ * threshold. The chunks come in order of decreasing confidence, so iteration stops at the first
+ * chunk below the threshold instead of scoring the rest of the n-best list. Chunk scores are log2
+ * confidences, so the threshold is converted once and compared in log space.
+ *
+ * The question is copied into a buffer kept per thread, rather than into a new array per call.
+ */
+final class ConfidenceChunks {
+
+  private static final double LN_2 = Math.log(2.0);
+
+  private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+    @Override
+    protected char[] initialValue() {
+      return new char[256];
+    }
+  };
+
+  private ConfidenceChunks() {
+  }
+
+  /* The log2 score a chunk needs for the given confidence; minus infinity for none or less */
+  static double log2Threshold(double confidence) {
+    return confidence > 0.0 ? Math.log(confidence) / LN_2 : Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Returns the text of the first <code>nBest</code> chunks of the question whose log2 score is
+   * above <code>log2Threshold</code>, or equal to it as well if <code>inclusive</code>.
+   */
+  static List<Keyterm> extract(ConfidenceChunker chunker, String question, int nBest,
+          double log2Threshold, boolean inclusive) {
+    List<Keyterm> keytermList = new ArrayList<Keyterm>();
+    int length = question.length();
+    char[] cs = BUFFER.get();
+    if (cs.length < length) {
+      cs = new char[Math.max(length, 2 * cs.length)];
+      BUFFER.set(cs);
+    }
+    question.getChars(0, length, cs, 0);
+
+    Iterator<Chunk> it = chunker.nBestChunks(cs, 0, length, nBest);
+    while (it.hasNext()) {
+      Chunk chunk = it.next();
+      double score = chunk.score();
+      if (score < log2Threshold || (!inclusive && score == log2Threshold)) {
+        break;
+      }
+      keytermList.add(new Keyterm(question.substring(chunk.start(), chunk.end())));
+    }
+    return keytermList;
+  }
+}
@@ -0,0 +1,247 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.keyterm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.oaqa.framework.data.Keyterm;
+
+/**
+ * Runs several keyterm extractors on each question at once and merges their keyterms, so the
+ * ensemble has the recall of their union at the latency of the slowest member rather than of all
+ * of them in turn. It is configured with the following parameters:
+ *
+ * <ul>
+ * <li><code>members</code> - classes of the member extractors, each a
+ * {@link CachingKeytermExtractor}. Members are initialized with the ensemble's own context, so
+ * their parameters (<code>model_file</code>, <code>ModelFile</code>, ...) go along with it</li>
+ * <li><code>minVotes</code> - number of members which must agree on a keyterm, default 1</li>
+ * <li><code>mergeOverlapping</code> - whether overlapping keyterms become the one span covering
+ * them all, or are kept as found, default true</li>
+ * </ul>
+ *
+ * Keyterms are located in the question by their first occurrence; keyterms which overlap there
+ * form one group, and a member votes for a group if any of its keyterms is in it. Keyterms which do
+ * not occur in the question are grouped by their text alone, and come first; the other groups
+ * follow in question order.
+ */
+public class EnsembleKeytermExtractor extends AbstractKeytermExtractor {
+
+  public static final String PARAM_MEMBERS = "members";
+
+  public static final String PARAM_MIN_VOTES = "minVotes";
+
+  public static final String PARAM_MERGE_OVERLAPPING = "mergeOverlapping";
+
+  private final List<CachingKeytermExtractor> members = new ArrayList<CachingKeytermExtractor>();
+
+  private int minVotes = 1;
+
+  private boolean mergeOverlapping = true;
+
+  private ExecutorService executor = null;
+
+  // Per member: questions answered, and total time spent on them in nanoseconds.
+  private long[] calls;
+
+  private long[] nanos;
+
+  @Override
+  public void initialize(UimaContext c) throws ResourceInitializationException {
+    super.initialize(c);
+    String[] classes = (String[]) c.getConfigParameterValue(PARAM_MEMBERS);
+    if (classes == null || classes.length == 0) {
+      throw new ResourceInitializationException(new IllegalArgumentException(
+              "No ensemble members configured"));
+    }
+    for (String name : classes) {
+      try {
+        CachingKeytermExtractor member = (CachingKeytermExtractor) Class.forName(name.trim())
+                .newInstance();
+        member.initialize(c);
+        members.add(member);
+      } catch (ClassNotFoundException e) {
+        throw new ResourceInitializationException(e);
+      } catch (InstantiationException e) {
+        throw new ResourceInitializationException(e);
+      } catch (IllegalAccessException e) {
+        throw new ResourceInitializationException(e);
+      }
+    }
+    Integer votes = (Integer) c.getConfigParameterValue(PARAM_MIN_VOTES);
+    if (votes != null) {
+      minVotes = votes;
+    }
+    Object merge = c.getConfigParameterValue(PARAM_MERGE_OVERLAPPING);
+    if (merge != null) {
+      mergeOverlapping = Boolean.TRUE.equals(merge);
+    }
+    calls = new long[members.size()];
+    nanos = new long[members.size()];
+    if (members.size() > 1) {
+      executor = Executors.newFixedThreadPool(members.size(), new ThreadFactory() {
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "keyterm-worker-" + (++count));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  @Override
+  protected List<Keyterm> getKeyterms(final String question) {
+    List<Future<List<Keyterm>>> futures = new ArrayList<Future<List<Keyterm>>>();
+    List<List<Keyterm>> results = new ArrayList<List<Keyterm>>();
+    for (int m = 0; m < members.size(); m++) {
+      final int member = m;
+      if (executor == null) {
+        results.add(runMember(member, question));
+      } else {
+        futures.add(executor.submit(new Callable<List<Keyterm>>() {
+          public List<Keyterm> call() {
+            return runMember(member, question);
+          }
+        }));
+      }
+    }
+    try {
+      for (Future<List<Keyterm>> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      for (Future<List<Keyterm>> future : futures) {
+        future.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      // runMember catches the members' failures
+      throw new RuntimeException(e.getCause());
+    }
+    return merge(question, results);
+  }
+
+  /* Runs one member, timing it; a failing member is reported and gets no vote */
+  private List<Keyterm> runMember(int member, String question) {
+    long start = System.nanoTime();
+    try {
+      return members.get(member).getKeyterms(question);
+    } catch (RuntimeException e) {
+      System.err.println(members.get(member).getClass().getSimpleName() + " failed on \""
+              + question + "\": " + e);
+      return Collections.emptyList();
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      synchronized (this) {
+        calls[member]++;
+        nanos[member] += elapsed;
+      }
+    }
+  }
+
+  private List<Keyterm> merge(String question, List<List<Keyterm>> results) {
+    // 1. Locate each distinct keyterm, recording which members found it.
+    Map<String, Span> byText = new LinkedHashMap<String, Span>();
+    for (int m = 0; m < results.size(); m++) {
+      for (Keyterm keyterm : results.get(m)) {
+        String text = keyterm.getText();
+        if (text == null || text.trim().length() == 0) {
+          continue;
+        }
+        Span span = byText.get(text);
+        if (span == null) {
+          span = new Span(text, question.indexOf(text));
+          byText.put(text, span);
+        }
+        span.members.add(m);
+      }
+    }
+    List<Span> spans = new ArrayList<Span>(byText.values());
+    Collections.sort(spans, new Comparator<Span>() {
+      public int compare(Span s1, Span s2) {
+        if (s1.begin != s2.begin) {
+          return s1.begin < s2.begin ? -1 : 1;
+        }
+        return s2.end - s1.end;
+      }
+    });
+
+    // 2. Group overlapping spans and keep the groups with enough votes.
+    List<Keyterm> keytermList = new ArrayList<Keyterm>();
+    int i = 0;
+    while (i < spans.size()) {
+      Span first = spans.get(i);
+      int end = first.end;
+      Set<Integer> voters = new HashSet<Integer>(first.members);
+      int j = i + 1;
+      // spans missing from the question (begin -1) sort first, and each is a group of its own
+      while (first.begin >= 0 && j < spans.size() && spans.get(j).begin < end) {
+        end = Math.max(end, spans.get(j).end);
+        voters.addAll(spans.get(j).members);
+        j++;
+      }
+      if (voters.size() >= minVotes) {
+        if (mergeOverlapping && first.begin >= 0) {
+          keytermList.add(new Keyterm(question.substring(first.begin, end)));
+        } else {
+          for (int k = i; k < j; k++) {
+            keytermList.add(new Keyterm(spans.get(k).text));
+          }
+        }
+      }
+      i = j;
+    }
+    return keytermList;
+  }
+
+  private static class Span {
+    final String text;
+
+    final int begin;
+
+    final int end;
+
+    final Set<Integer> members = new HashSet<Integer>();
+
+    Span(String text, int begin) {
+      this.text = text;
+      this.begin = begin;
+      this.end = begin < 0 ? -1 : begin + text.length();
+    }
+  }
+
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    super.collectionProcessComplete();
+    for (int m = 0; m < members.size(); m++) {
+      members.get(m).collectionProcessComplete();
+      synchronized (this) {
+        System.out.println(String.format("%s: %d questions, %.1f ms average, %.1f ms total",
+                members.get(m).getClass().getSimpleName(), calls[m], calls[m] == 0 ? 0.0
+                        : nanos[m] / 1e6 / calls[m], nanos[m] / 1e6));
+      }
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
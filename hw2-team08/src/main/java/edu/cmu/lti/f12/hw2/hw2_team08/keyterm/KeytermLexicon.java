@@ -0,0 +1,113 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.keyterm;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.cmu.lti.f12.hw2.hw2_team08.util.KeytermCache;
+
+/**
+ * A word list used by the keyterm extractors, such as head nouns, stop terms or the classes of
+ * part-of-speech tags, loaded from a classpath resource so the lists can grow without code
+ * changes. Entries are hashed, so a lookup costs the same however many entries there are.
+ *
+ * A resource has one entry per line, either <code>term</code> or <code>term&lt;TAB&gt;value</code>
+ * with an integer value; blank lines and lines starting with <code>#</code> are skipped. Terms are
+ * matched exactly. Each resource is loaded once and shared, see {@link #getInstance(String)}.
+ */
+public class KeytermLexicon {
+
+  /* Nouns which usually end or extend a gene mention, e.g. "gene", "promoter" */
+  public static final String HEAD_NOUNS = "data/keyterm/head-nouns.txt";
+
+  /* Terms never returned as keyterms on their own */
+  public static final String STOP_TERMS = "data/keyterm/stop-terms.txt";
+
+  /* Part-of-speech tags and the class CombinationKeyterm gives them */
+  public static final String POS_CLASSES = "data/keyterm/pos-classes.txt";
+
+  private static final Map<String, KeytermLexicon> instances = new HashMap<String, KeytermLexicon>();
+
+  private final Map<String, Integer> entries = new HashMap<String, Integer>();
+
+  private String checksum;
+
+  private KeytermLexicon() {
+  }
+
+  /* The lexicon in the resource, loaded on first use and shared by all extractors in the JVM */
+  public static synchronized KeytermLexicon getInstance(String resource) {
+    KeytermLexicon lexicon = instances.get(resource);
+    if (lexicon == null) {
+      lexicon = new KeytermLexicon();
+      try {
+        lexicon.load(resource);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not load " + resource, e);
+      }
+      instances.put(resource, lexicon);
+    }
+    return lexicon;
+  }
+
+  private void load(String resource) throws IOException {
+    InputStream in = KeytermLexicon.class.getClassLoader().getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("resource not found");
+    }
+    // read the bytes once, to hash them as well as parse them
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    checksum = KeytermCache.md5(new ByteArrayInputStream(bytes.toByteArray()));
+    BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(
+            bytes.toByteArray()), "UTF-8"));
+    try {
+      String line;
+      while ((line = br.readLine()) != null) {
+        if (line.startsWith("#") || line.trim().length() == 0)
+          continue;
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+          entries.put(line.trim(), 0);
+        } else {
+          entries.put(line.substring(0, tab).trim(), Integer.valueOf(line.substring(tab + 1)
+                  .trim()));
+        }
+      }
+    } finally {
+      br.close();
+    }
+  }
+
+  public boolean contains(String term) {
+    return term != null && entries.containsKey(term);
+  }
+
+  /* The value of the term, or the default if it is not in the lexicon */
+  public int get(String term, int defaultValue) {
+    Integer value = term == null ? null : entries.get(term);
+    return value == null ? defaultValue : value;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /* MD5 hash of the resource's bytes, which changes whenever the resource does */
+  public String getChecksum() {
+    return checksum;
+  }
+}
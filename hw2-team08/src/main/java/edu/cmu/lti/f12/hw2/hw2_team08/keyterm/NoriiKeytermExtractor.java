@@ -11,31 +11,35 @@ import org.apache.uima.resource.ResourceInitializationException;
 import com.aliasi.chunk.Chunk;
 import com.aliasi.chunk.Chunker;
 import com.aliasi.chunk.Chunking;
-import com.aliasi.util.AbstractExternalizable;
 
-import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.ChunkerModelRegistry;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 
 /**
  *
  * @author Naoki Orii
  */
-public class NoriiKeytermExtractor extends AbstractKeytermExtractor {
+public class NoriiKeytermExtractor extends CachingKeytermExtractor {
 
   public static final String PARAM_MODELFILE = "model_file";
 
   private Chunker chunker;
 
+  private File modelFile;
+
   @Override
   public void initialize(UimaContext c) throws ResourceInitializationException {
     super.initialize(c);
-    File modelFile = new File(((String) c.getConfigParameterValue(PARAM_MODELFILE)).trim());
+    modelFile = new File(((String) c.getConfigParameterValue(PARAM_MODELFILE)).trim());
     if (!modelFile.exists()) {
       throw new ResourceInitializationException();
     }
+  }
 
+  @Override
+  protected void loadModels() throws ResourceInitializationException {
     try {
-      chunker = (Chunker) AbstractExternalizable.readObject(modelFile);
+      chunker = (Chunker) ChunkerModelRegistry.getInstance().getModel(modelFile);
     } catch (IOException e) {
       throw new ResourceInitializationException(e);
     } catch (ClassNotFoundException e) {
@@ -44,7 +48,7 @@ public class NoriiKeytermExtractor extends AbstractKeytermExtractor {
   }
 
   @Override
-  protected List<Keyterm> getKeyterms(String question) {
+  protected List<Keyterm> extractKeyterms(String question) {
     List<Keyterm> keytermList = new ArrayList<Keyterm>();
 
     Chunking chunking = chunker.chunk(question);
@@ -2,18 +2,14 @@ package edu.cmu.lti.f12.hw2.hw2_team08.keyterm;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.resource.ResourceInitializationException;
 
-import com.aliasi.chunk.Chunk;
 import com.aliasi.chunk.ConfidenceChunker;
-import com.aliasi.util.AbstractExternalizable;
 
-import edu.cmu.lti.oaqa.cse.basephase.keyterm.AbstractKeytermExtractor;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.ChunkerModelRegistry;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 
 /**
@@ -32,7 +28,7 @@ import edu.cmu.lti.oaqa.framework.data.Keyterm;
  * @author <a href="mailto:yuangu@andrew.cmu.edu">Yuan Gu</a>
  */
 
-public class YuanGuKeytermExtractor extends AbstractKeytermExtractor {
+public class YuanGuKeytermExtractor extends CachingKeytermExtractor {
 
   /**
    * Name of configuration parameter which set the Number of Best Chunk.
@@ -64,26 +60,21 @@ public class YuanGuKeytermExtractor extends AbstractKeytermExtractor {
    */
   private float mConfidenceThreshold;
 
-  @Override
-  protected List<Keyterm> getKeyterms(String question) {
-    List<Keyterm> keytermList = new ArrayList<Keyterm>();
-
-    // add extracted keyterms
-    Iterator<Chunk> it = mChunker.nBestChunks(question.toCharArray(), 0,
-            question.toCharArray().length, mBestChunkNumber);
-    while (it.hasNext()) {
-      Chunk chunk = it.next();
-      int start = chunk.start();
-      int end = chunk.end();
-      float confidence = (float) Math.pow(2.0, chunk.score());
-
-      if (confidence > mConfidenceThreshold) {
-        String keyterm = question.substring(start, end);
-        keytermList.add(new Keyterm(keyterm));
-      }
-    }
+  /**
+   * Confidence Threshold as a log2 chunk score, which chunks are compared with
+   */
+  private double mLog2ConfidenceThreshold;
+
+  /**
+   * LingPipe model file, loaded on the first question missing from the keyterm cache
+   */
+  private String mModelFilePath;
 
-    return keytermList;
+  @Override
+  protected List<Keyterm> extractKeyterms(String question) {
+    // add extracted keyterms, stopping at the first chunk below the threshold
+    return ConfidenceChunks.extract(mChunker, question, mBestChunkNumber,
+            mLog2ConfidenceThreshold, false);
   }
 
   @Override
@@ -94,13 +85,24 @@ public class YuanGuKeytermExtractor extends AbstractKeytermExtractor {
     mBestChunkNumber = (Integer) aContext.getConfigParameterValue(PARAM_BESTCHUNKNUMBER);
     mConfidenceThreshold = Float.parseFloat((String) aContext
             .getConfigParameterValue(PARAM_CONFIDENCETHRESHOLD));
-    String modelFilePath = (String) aContext.getConfigParameterValue(PARAM_MODELFILE);
+    mLog2ConfidenceThreshold = ConfidenceChunks.log2Threshold(mConfidenceThreshold);
+    mModelFilePath = (String) aContext.getConfigParameterValue(PARAM_MODELFILE);
+    // the model is loaded later, but a missing file should still fail at startup
+    if (mModelFilePath == null || !new File(mModelFilePath).isFile()) {
+      throw new ResourceInitializationException(
+              ResourceInitializationException.COULD_NOT_ACCESS_DATA,
+              new Object[] { "LingPipeGeneTagModel" });
+    }
+  }
 
+  @Override
+  protected void loadModels() throws ResourceInitializationException {
     // initialize LingPipe ConfidenceChunker
     File modelFile;
     try {
-      modelFile = new File(modelFilePath);
-      mChunker = (ConfidenceChunker) AbstractExternalizable.readObject(modelFile);
+      modelFile = new File(mModelFilePath);
+      // shared with the other extractors using the same model file
+      mChunker = (ConfidenceChunker) ChunkerModelRegistry.getInstance().getModel(modelFile);
     } catch (IOException e) {
       e.printStackTrace();
       throw new ResourceInitializationException(
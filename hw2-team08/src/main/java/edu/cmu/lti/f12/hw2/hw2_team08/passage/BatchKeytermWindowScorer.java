@@ -0,0 +1,12 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+/**
+ * A {@link KeytermWindowScorer} which can also score many windows of a document in one call.
+ * Window <code>i</code> runs from <code>begins[i]</code> to <code>ends[i]</code> and contains
+ * <code>matchesFound[i]</code> matches of <code>keytermsFound[i]</code> distinct keyterms; its
+ * score is written to <code>scores[i]</code>, and must equal what
+ * {@link #scoreWindow(int, int, int, int, int, int, int)} returns for the same window.
+ */
+public interface BatchKeytermWindowScorer extends KeytermWindowScorer {
+  public void scoreWindows ( int count , int[] begins , int[] ends , int[] matchesFound , int totalMatches , int[] keytermsFound , int totalKeyterms , int textSize , double[] scores );
+}
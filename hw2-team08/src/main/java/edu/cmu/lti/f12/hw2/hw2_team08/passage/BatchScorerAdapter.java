@@ -0,0 +1,35 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+/**
+ * Lets a plain {@link KeytermWindowScorer} be used where a {@link BatchKeytermWindowScorer} is
+ * expected, by scoring the windows one at a time.
+ */
+public class BatchScorerAdapter implements BatchKeytermWindowScorer {
+
+  private final KeytermWindowScorer scorer;
+
+  public BatchScorerAdapter( KeytermWindowScorer scorer ) {
+    this.scorer = scorer;
+  }
+
+  public static BatchKeytermWindowScorer adapt( KeytermWindowScorer scorer ) {
+    if ( scorer instanceof BatchKeytermWindowScorer )
+      return (BatchKeytermWindowScorer) scorer;
+    return new BatchScorerAdapter( scorer );
+  }
+
+  @Override
+  public double scoreWindow(int begin, int end, int matchesFound,
+      int totalMatches, int keytermsFound, int totalKeyterms,
+      int textSize) {
+    return scorer.scoreWindow( begin , end , matchesFound , totalMatches , keytermsFound , totalKeyterms , textSize );
+  }
+
+  @Override
+  public void scoreWindows(int count, int[] begins, int[] ends, int[] matchesFound,
+      int totalMatches, int[] keytermsFound, int totalKeyterms, int textSize,
+      double[] scores) {
+    for ( int i = 0 ; i < count ; i++ )
+      scores[ i ] = scorer.scoreWindow( begins[ i ] , ends[ i ] , matchesFound[ i ] , totalMatches , keytermsFound[ i ] , totalKeyterms , textSize );
+  }
+}
@@ -0,0 +1,13 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+/**
+ * A {@link KeytermWindowScorer} which can bound the score of a whole range of windows at once, so
+ * that window enumeration can skip the ranges which cannot score well enough.
+ *
+ * The range is described by the smallest begin offset and the smallest size of its windows, and
+ * by the most matches and keyterms any of its windows can contain. The bound must be at least the
+ * score of every window in the range.
+ */
+public interface BoundedKeytermWindowScorer extends KeytermWindowScorer {
+  public double upperBound ( int minBegin , int minWindowSize , int maxMatchesFound , int totalMatches , int maxKeytermsFound , int totalKeyterms , int textSize );
+}
@@ -0,0 +1,176 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+import edu.cmu.lti.oaqa.openqa.hello.passage.KeytermWindowScorer;
+import edu.cmu.lti.oaqa.openqa.hello.passage.PassageCandidateFinder;
+
+/**
+ * Runs a <code>PassageCandidateFinder</code> over a whole document in fixed-size segments, since
+ * the finder's cost grows too fast with the length of the text to run it on full-text articles at
+ * once. Consecutive segments overlap by <code>segmentOverlap</code> characters, so any window
+ * up to that length which straddles a segment boundary lies entirely within one segment. The
+ * windows of all segments are shifted back to document offsets and returned as one list, each
+ * window once, sorted by start offset and then longest first, so that passes such as
+ * {@link NoOverlapsPassageCandidateFinder#mergePassages(List)} can run once over the whole
+ * document.
+ *
+ * The keyterms are matched once over the whole document, and every window is scored from the
+ * matches lying within it and the document's match totals, keyterm count and length, so a window
+ * gets the same score whichever segment it is found in, and whether or not the document is
+ * split at all. A window longer than <code>segmentOverlap</code> which crosses a segment boundary
+ * is not found; it contains the shorter windows of its keyterm matches, which mergePassages keeps
+ * in its stead anyway, so merging gives the same passages as for the unsplit document unless such
+ * a window abuts another one. A segment size of 0 or less scans the document in one go.
+ */
+public class ChunkedPassageScanner {
+
+  private final int segmentSize;
+
+  private final int segmentOverlap;
+
+  public ChunkedPassageScanner(int segmentSize, int segmentOverlap) {
+    if (segmentSize > 0 && (segmentOverlap < 0 || segmentOverlap >= segmentSize))
+      throw new IllegalArgumentException("segmentOverlap must be at least 0 and less than "
+              + "segmentSize, got " + segmentOverlap + " and " + segmentSize);
+    this.segmentSize = segmentSize;
+    this.segmentOverlap = segmentOverlap;
+  }
+
+  public List<PassageCandidate> scan(String id, String text, KeytermMatcher matcher,
+          KeytermWindowScorer scorer) throws AnalysisEngineProcessException {
+    int[] matches = matcher.findAllMatches(text);
+    DocumentWindowScorer documentScorer = new DocumentWindowScorer(scorer, matcher.size(),
+            matches, text.length());
+
+    Map<Long, PassageCandidate> windows = new HashMap<Long, PassageCandidate>();
+    int step = segmentSize <= 0 ? text.length() : segmentSize - segmentOverlap;
+    for (int offset = 0; offset < text.length(); offset += step) {
+      int end = segmentSize <= 0 ? text.length() : Math.min(text.length(), offset + segmentSize);
+      String[] keytermPatterns = segmentPatterns(matcher, matches, offset, end);
+      if (keytermPatterns.length > 0) {
+        documentScorer.setOffset(offset);
+        String segment = offset == 0 && end == text.length() ? text : text.substring(offset, end);
+        PassageCandidateFinder finder = new PassageCandidateFinder(id, segment, documentScorer);
+        for (PassageCandidate passage : finder.extractPassages(keytermPatterns)) {
+          if (offset > 0)
+            passage = new PassageCandidate(passage.getDocID(), passage.getStart() + offset,
+                    passage.getEnd() + offset, passage.getProbability(), passage.getQueryString());
+          Long key = ((long) passage.getStart() << 32) | passage.getEnd();
+          if (!windows.containsKey(key))
+            windows.put(key, passage);
+        }
+      }
+      if (end == text.length())
+        break;
+    }
+
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>(windows.values());
+    Collections.sort(result, new Comparator<PassageCandidate>() {
+      public int compare(PassageCandidate pc1, PassageCandidate pc2) {
+        if (pc1.getStart() != pc2.getStart())
+          return pc1.getStart() < pc2.getStart() ? -1 : 1;
+        return pc1.getEnd() == pc2.getEnd() ? 0 : pc1.getEnd() > pc2.getEnd() ? -1 : 1;
+      }
+    });
+    return result;
+  }
+
+  /* The keyterms with a match lying within [begin, end), as literal patterns */
+  private static String[] segmentPatterns(KeytermMatcher matcher, int[] matches, int begin,
+          int end) {
+    boolean[] found = new boolean[matcher.size()];
+    for (int m = 0; m < matches.length; m += 3)
+      if (matches[m + 1] >= begin && matches[m + 2] <= end)
+        found[matches[m]] = true;
+    List<String> patterns = new ArrayList<String>();
+    for (int i = 0; i < found.length; i++)
+      if (found[i])
+        patterns.add(matcher.getKeytermPattern(i));
+    return patterns.toArray(new String[0]);
+  }
+
+  /* Scores a segment's windows as windows of the whole document, from the document's matches */
+  private static class DocumentWindowScorer implements KeytermWindowScorer {
+    private final KeytermWindowScorer scorer;
+
+    // (keyterm, begin, end) triples in the order of their ends
+    private final int[] matches;
+
+    private final int totalMatches;
+
+    private final int totalKeyterms;
+
+    private final int textSize;
+
+    // Keyterms seen while counting a window are marked with that window's stamp.
+    private final int[] seen;
+
+    private int stamp = 0;
+
+    private int offset = 0;
+
+    DocumentWindowScorer(KeytermWindowScorer scorer, int keyterms, int[] matches, int textSize) {
+      this.scorer = scorer;
+      this.matches = matches;
+      this.textSize = textSize;
+      seen = new int[keyterms];
+      int found = 0;
+      for (int m = 0; m < matches.length; m += 3) {
+        if (seen[matches[m]] == 0) {
+          seen[matches[m]] = -1;
+          found++;
+        }
+      }
+      totalMatches = matches.length / 3;
+      totalKeyterms = found;
+    }
+
+    void setOffset(int offset) {
+      this.offset = offset;
+    }
+
+    public double scoreWindow(int begin, int end, int segmentMatchesFound, int segmentMatches,
+            int segmentKeytermsFound, int segmentKeyterms, int segmentSize) {
+      begin += offset;
+      end += offset;
+      stamp++;
+      int matchesFound = 0;
+      int keytermsFound = 0;
+      // the matches within [begin, end) are among those ending in (begin, end]
+      for (int m = 3 * firstEndingAfter(begin); m < matches.length && matches[m + 2] <= end; m += 3) {
+        if (matches[m + 1] < begin)
+          continue;
+        matchesFound++;
+        if (seen[matches[m]] != stamp) {
+          seen[matches[m]] = stamp;
+          keytermsFound++;
+        }
+      }
+      return scorer.scoreWindow(begin, end, matchesFound, totalMatches, keytermsFound,
+              totalKeyterms, textSize);
+    }
+
+    /* The index of the first match ending after the offset */
+    private int firstEndingAfter(int offset) {
+      int low = 0;
+      int high = matches.length / 3;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (matches[3 * mid + 2] <= offset)
+          low = mid + 1;
+        else
+          high = mid;
+      }
+      return low;
+    }
+  }
+}
@@ -3,13 +3,21 @@ package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 import java.util.ArrayList;
 import java.util.List;
 
-public class CompositeKeytermWindowScorer implements KeytermWindowScorer {
+public class CompositeKeytermWindowScorer implements BatchKeytermWindowScorer, BoundedKeytermWindowScorer {
   
-  private List<KeytermWindowScorer> scorers;
+  private List<WeightedScorer> scorers;
+
+  // Scores of a single component, per thread, so that batch scoring allocates nothing.
+  private static final ThreadLocal<double[]> componentScores = new ThreadLocal<double[]>() {
+    @Override
+    protected double[] initialValue() {
+      return new double[ 1024 ];
+    }
+  };
   
   public CompositeKeytermWindowScorer () {
     super();
-    scorers = new ArrayList<KeytermWindowScorer>();
+    scorers = new ArrayList<WeightedScorer>();
   }
   
   public void useDefaultScorers() {
@@ -32,33 +40,65 @@ public class CompositeKeytermWindowScorer implements KeytermWindowScorer {
   public double scoreWindow(int begin, int end, int matchesFound,
       int totalMatches, int keytermsFound, int totalKeyterms, int textSize) {
     double result = 0.0d;
-    for ( KeytermWindowScorer scorer : scorers ) {
-      double score = scorer.scoreWindow( begin , end , matchesFound , totalMatches , keytermsFound , totalKeyterms , textSize );
+    for ( WeightedScorer scorer : scorers ) {
+      double score = scorer.scorer.scoreWindow( begin , end , matchesFound , totalMatches , keytermsFound , totalKeyterms , textSize );
       if ( score > 1.0d || score < 0.0d )
-        System.out.println( scorer.getClass().getSimpleName() + " OUT OF BOUNDS: " + score );
-      result += score;      
+        System.out.println( scorer.scorer.getClass().getSimpleName() + " OUT OF BOUNDS: " + score );
+      result += scorer.lambda * score;      
     }
     return result;
   }
-  private class WeightedScorer implements KeytermWindowScorer {
-    Double lambda;
-    KeytermWindowScorer scorer;
-    public WeightedScorer( KeytermWindowScorer scorer , Double lambda ) {
-      this.scorer = scorer;
-      this.lambda = lambda;
+
+  @Override
+  public void scoreWindows(int count, int[] begins, int[] ends, int[] matchesFound,
+      int totalMatches, int[] keytermsFound, int totalKeyterms, int textSize,
+      double[] scores) {
+    double[] component = componentScores.get();
+    if ( component.length < count ) {
+      component = new double[ Math.max( count , 2 * component.length ) ];
+      componentScores.set( component );
     }
-    @Override
-    public double scoreWindow(int begin, int end, int matchesFound,
-        int totalMatches, int keytermsFound, int totalKeyterms,
-        int textSize) {
-      return lambda * scorer.scoreWindow( begin , end , matchesFound , totalMatches , keytermsFound , totalKeyterms , textSize );
+    for ( int i = 0 ; i < count ; i++ )
+      scores[ i ] = 0.0d;
+    for ( WeightedScorer scorer : scorers ) {
+      scorer.batch.scoreWindows( count , begins , ends , matchesFound , totalMatches , keytermsFound , totalKeyterms , textSize , component );
+      double lambda = scorer.lambda;
+      boolean outOfBounds = false;
+      for ( int i = 0 ; i < count ; i++ ) {
+        double score = component[ i ];
+        outOfBounds |= score > 1.0d || score < 0.0d;
+        scores[ i ] += lambda * score;
+      }
+      if ( outOfBounds )
+        for ( int i = 0 ; i < count ; i++ )
+          if ( component[ i ] > 1.0d || component[ i ] < 0.0d )
+            System.out.println( scorer.scorer.getClass().getSimpleName() + " OUT OF BOUNDS: " + component[ i ] );
     }
-    
   }
-  
 
-  
-  
-  
+  // The weighted sum of the components' bounds, or infinity if a component cannot bound its
+  // scores or has a negative weight.
+  @Override
+  public double upperBound(int minBegin, int minWindowSize, int maxMatchesFound,
+      int totalMatches, int maxKeytermsFound, int totalKeyterms, int textSize) {
+    double result = 0.0d;
+    for ( WeightedScorer scorer : scorers ) {
+      if ( scorer.lambda < 0.0d || ! ( scorer.scorer instanceof BoundedKeytermWindowScorer ) )
+        return Double.POSITIVE_INFINITY;
+      result += scorer.lambda * ( (BoundedKeytermWindowScorer) scorer.scorer ).upperBound( minBegin , minWindowSize , maxMatchesFound , totalMatches , maxKeytermsFound , totalKeyterms , textSize );
+    }
+    return result;
+  }
+
+  private static class WeightedScorer {
+    final double lambda;
+    final KeytermWindowScorer scorer;
+    final BatchKeytermWindowScorer batch;
+    public WeightedScorer( KeytermWindowScorer scorer , double lambda ) {
+      this.scorer = scorer;
+      this.batch = BatchScorerAdapter.adapt( scorer );
+      this.lambda = lambda;
+    }
+  }
 
 }
@@ -1,21 +1,21 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
+import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.jsoup.Jsoup;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 
+import edu.cmu.lti.f12.hw2.hw2_team08.util.CleanedTextCache;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.DocumentTextCache;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.NormalizedText;
 import edu.cmu.lti.oaqa.core.provider.solr.SolrWrapper;
 import edu.cmu.lti.oaqa.cse.basephase.ie.AbstractPassageExtractor;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
@@ -26,8 +26,13 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
 
   private static DecimalFormat score = new DecimalFormat( "0.000" );
   private CompositeKeytermWindowScorer scorer;
+  private KeytermWindowEnumerator enumerator;
   private SolrWrapper wrapper;
+  private DocumentTextCache documentCache;
+  private CleanedTextCache cleanedTextCache;
   private PassageCandidateComparator comparator;
+  private ParallelDocumentProcessor processor;
+  private OverlapSuppressor suppressor;
   
   // Configuration parameters.
   List<Double> scorerLambdas;
@@ -35,6 +40,11 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
   private Integer passageSizeLimit;
   private Integer maxPassages;
   private Double overlapThreshold;
+  private boolean keytermMatchCaseInsensitive;
+  private boolean keytermMatchTokenBoundary;
+  private boolean rawOffsets;
+  private boolean windowPruning;
+  private boolean sentenceAlignedWindows;
 
   @Override
   public void initialize(UimaContext aContext) throws ResourceInitializationException {
@@ -54,11 +64,29 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
     passageSizeLimit = (Integer)aContext.getConfigParameterValue( "passageSizeLimit" );
     maxPassages = (Integer)aContext.getConfigParameterValue( "maxPassages" );
 
+    keytermMatchCaseInsensitive = Boolean.TRUE.equals( aContext.getConfigParameterValue( "keytermMatchCaseInsensitive" ) );
+    keytermMatchTokenBoundary = Boolean.TRUE.equals( aContext.getConfigParameterValue( "keytermMatchTokenBoundary" ) );
+    windowPruning = Boolean.TRUE.equals( aContext.getConfigParameterValue( "windowPruning" ) );
+    sentenceAlignedWindows = Boolean.TRUE.equals( aContext.getConfigParameterValue( "sentenceAlignedWindows" ) );
+
     overlapThreshold = Double.parseDouble((String)aContext.getConfigParameterValue( "overlapThreshold" ));    
+    suppressor = new OverlapSuppressor( overlapThreshold );
     List<Double> scorerLambdas = new ArrayList<Double>();
     for ( String lambdaString : (String[])aContext.getConfigParameterValue( "keytermScorerLambdas" )) 
       scorerLambdas.add( new Double( Double.parseDouble( lambdaString ) ) );
 
+    documentCache = DocumentTextCache.getInstance();
+    Integer documentCacheSize = (Integer)aContext.getConfigParameterValue( "documentCacheSize" );
+    if ( documentCacheSize != null )
+      documentCache.setMaxWeight( documentCacheSize );
+    cleanedTextCache = CleanedTextCache.getInstance();
+    String cleanedTextCacheDir = (String)aContext.getConfigParameterValue( "cleanedTextCacheDir" );
+    if ( cleanedTextCacheDir != null )
+      cleanedTextCache.setDirectory( new File( cleanedTextCacheDir ) );
+    rawOffsets = Boolean.TRUE.equals( aContext.getConfigParameterValue( "rawOffsets" ) );
+    Integer parallelism = (Integer)aContext.getConfigParameterValue( "parallelism" );
+    processor = new ParallelDocumentProcessor( ParallelDocumentProcessor.solrParallelism( parallelism , embedded ) );
+
     // Create solr wrapper, scorer composite.
     try {
       this.wrapper = new SolrWrapper(serverUrl, serverPort, embedded, core);
@@ -69,6 +97,10 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
         throw new RuntimeException( "Configuration Parameter values must be same length: keytermWindowScorers, keytermScorerLambdas" );
       for ( int i = 0 ; i < scorers.length ; i++ )
         scorer.add( (KeytermWindowScorer)Class.forName( scorers[ i ] ).newInstance() , scorerLambdas.get( i ) );
+      String enumeratorName = (String)aContext.getConfigParameterValue( "keytermWindowEnumerator" );
+      if ( enumeratorName == null )
+        enumeratorName = NestedLoopWindowEnumerator.class.getName();
+      this.enumerator = (KeytermWindowEnumerator)Class.forName( enumeratorName ).newInstance();
     } catch ( Exception e ) {
       throw new ResourceInitializationException( e );
     }
@@ -77,32 +109,25 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
   @Override
   protected List<PassageCandidate> extractPassages( String question, List<Keyterm> keyterms,
           List<RetrievalResult> documents ) {
-    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
-    for ( RetrievalResult document : documents ) {
-      String id = document.getDocID();
-      try {
-        String htmlText = wrapper.getDocText( id );
-        String text = Jsoup.parse(htmlText).text().replaceAll("([\177-\377\0-\32]*)", "")/* .trim() */;
-
-        List<String> keytermStrings = Lists.transform(keyterms, new Function<Keyterm, String>() {
-          public String apply(Keyterm keyterm) {
-            return keyterm.getText();
-          }
-        });
-        
-        List<PassageCandidate> passageSpans = extractTextPassages( id , text , keytermStrings.toArray(new String[0]) );
-        passageSpans = removeOverlappingPassages( passageSpans );
-        for ( PassageCandidate passageSpan : passageSpans ) 
-          result.add( passageSpan );
-      } catch ( SolrServerException e ) {
-        e.printStackTrace();
+    List<String> keytermStrings = Lists.transform(keyterms, new Function<Keyterm, String>() {
+      public String apply(Keyterm keyterm) {
+        return keyterm.getText();
       }
-    }
-    Collections.sort( result , comparator );
-    System.out.println( "Raw passages: " + result.size() );
-    if (result.size() > maxPassages) {
-      result = result.subList(0, maxPassages);
-    }
+    });
+    final KeytermMatcher matcher = new KeytermMatcher( keytermStrings.toArray(new String[0]) ,
+            keytermMatchCaseInsensitive , keytermMatchTokenBoundary );
+
+    // Keep only the best maxPassages as documents are processed, rather than sorting them all.
+    final TopKPassageCollector collector = new TopKPassageCollector( maxPassages , comparator );
+    processor.process( documents , new ParallelDocumentProcessor.DocumentExtractor() {
+      public List<PassageCandidate> extract( RetrievalResult document ) {
+        // windows scoring below the current maxPassages-th best can be skipped
+        float minScore = windowPruning ? collector.getThreshold() : Float.NEGATIVE_INFINITY;
+        return extractDocumentPassages( document , matcher , minScore );
+      }
+    } , collector );
+    System.out.println( "Raw passages: " + collector.getAdded() );
+    List<PassageCandidate> result = collector.getTopPassages();
     System.out.println( "Passages returned: " + result.size() );
     int rank = 0;
     for ( PassageCandidate p : result ) {
@@ -110,7 +135,7 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
       String id = p.getDocID();
       String text = null;
       try {
-        text = wrapper.getDocText( id );
+        text = documentCache.getDocText( wrapper , id );
       } catch (SolrServerException e) {
         e.printStackTrace();
       }
@@ -119,113 +144,60 @@ public class EhnKeytermPassageExtractor extends AbstractPassageExtractor {
     return result;
   }
 
-  public List<PassageCandidate> removeOverlappingPassages ( List<PassageCandidate> passages ){
-    boolean[] overlapping = new boolean[ passages.size() ];
-    for ( int i = 0 ; i < passages.size() ; i++ ) {
-      if ( overlapping[i] ) continue;
-      PassageCandidate p1 = passages.get( i );
-      for ( int j = i+1 ; j < passages.size() ; j++ ) {
-        PassageCandidate p2 = passages.get( j );
-        double overlapRatio = overlapRatio( p1 , p2 );
-        if ( overlapRatio > overlapThreshold ) 
-          if ( p1.getProbability() >= p2.getProbability() ) {
-            overlapping[ j ] = true;
-          } else {
-            overlapping[ i ] = true;
-          }
-      }
+  /* Fetches, cleans and scans a single document; called concurrently when parallelism > 1 */
+  private List<PassageCandidate> extractDocumentPassages( RetrievalResult document , KeytermMatcher matcher , float minScore ) {
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
+    String id = document.getDocID();
+    try {
+      String htmlText = documentCache.getDocText( wrapper , id );
+      NormalizedText normalized = cleanedTextCache.getNormalizedText( id , htmlText );
+      String text = normalized.getText();
+
+      int[] boundaries = sentenceAlignedWindows ? normalized.getBoundaries() : null;
+      List<PassageCandidate> passageSpans = extractTextPassages( id , text , matcher , minScore , boundaries );
+      passageSpans = removeOverlappingPassages( passageSpans );
+      for ( PassageCandidate passageSpan : passageSpans ) 
+        result.add( rawOffsets ? normalized.toRawPassage( passageSpan ) : passageSpan );
+    } catch ( SolrServerException e ) {
+      e.printStackTrace();
+    } catch ( AnalysisEngineProcessException e ) {
+      e.printStackTrace();
     }
-    List<PassageCandidate> newResult = new ArrayList<PassageCandidate>();
-    for ( int i = 0 ; i < passages.size(); i++ )
-      if (! overlapping[ i ] )
-        newResult.add( passages.get( i ) );
-    return newResult;
+    return result;
   }
 
-  private double overlapRatio ( PassageCandidate p1 , PassageCandidate p2 ) {
-    int p1s = p1.getStart(); int p1e = p1.getEnd(); 
-    int p2s = p2.getStart(); int p2e = p2.getEnd();
-    int overlapSize = 0; int totalSize = 0;
-    if ( p1s <= p2s && p1e <= p2e && p2s < p1e ) {
-      overlapSize = p1e - p2s;
-      totalSize = p2e - p1s;
-    } else if ( p2s <= p1s && p2e <= p1e && p1s < p2e ) {
-      overlapSize = p2e - p1s;
-      totalSize = p1e - p2s;
-    }
-    return ( overlapSize == 0 ) ? 0.0d : (double)overlapSize / (double)totalSize;
+  public List<PassageCandidate> removeOverlappingPassages ( List<PassageCandidate> passages ){
+    return suppressor.suppress( passages );
   }
 
-  public List<PassageCandidate> extractTextPassages( String id , String text , String[] keyterms ) {
-    int totalMatches = 0;
-    int totalKeyterms = 0;
-    List<List<PassageSpan>> matchingSpans = new ArrayList<List<PassageSpan>>();
-
-    // 1. Find all keyterm matches, up to keytermMatchLimit matches per keyterm.
-    for ( String keyterm : keyterms ) {
-      int keytermMatchesFound = 0;
-      List<PassageSpan> matchedSpans = new ArrayList<PassageSpan>();
-      Matcher m = Pattern.compile( keyterm ).matcher( text );
-      while ( m.find() && keytermMatchesFound < keytermMatchLimit ) {
-        matchedSpans.add( new PassageSpan( m.start() , m.end() ) );
-        keytermMatchesFound++;
-        totalMatches++;
-      }
-      if (! matchedSpans.isEmpty() ) {
-        matchingSpans.add( matchedSpans );
-        totalKeyterms++;
-      }
-    }
-
-    // 2. Create set of left edges and right edges which define possible windows.
-    List<Integer> leftEdges = new ArrayList<Integer>();
-    List<Integer> rightEdges = new ArrayList<Integer>();
-    for ( List<PassageSpan> keytermMatches : matchingSpans ) {
-      for ( PassageSpan keytermMatch : keytermMatches ) {
-        Integer leftEdge = keytermMatch.begin;
-        Integer rightEdge = keytermMatch.end; 
-        if (! leftEdges.contains( leftEdge ))
-          leftEdges.add( leftEdge );
-        if (! rightEdges.contains( rightEdge ))
-          rightEdges.add( rightEdge );
-      }
-    }
-
-    // 3. For every possible window, calculate keyterms found, matches found; score window, and create passage candidate.
-    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
-    for ( Integer begin : leftEdges ) {
-      for ( Integer end : rightEdges ) {
-        if ( end <= begin ) continue; 
-        if ( ( end - begin ) > passageSizeLimit ) continue;
-        int keytermsFound = 0;
-        int matchesFound = 0;
-        for ( List<PassageSpan> keytermMatches : matchingSpans ) {
-          boolean thisKeytermFound = false;
-          for ( PassageSpan keytermMatch : keytermMatches ) {
-            if ( keytermMatch.containedIn( begin , end ) ){
-              matchesFound++;
-              thisKeytermFound = true;
-            }
-          }
-          if ( thisKeytermFound ) keytermsFound++;
-        }
-        double score = scorer.scoreWindow( begin , end , matchesFound , totalMatches , keytermsFound , totalKeyterms , text.length() );
-        PassageCandidate window = null;
-        try {
-          window = new PassageCandidate( id , begin , end , (float) score , null );
-        } catch ( AnalysisEngineProcessException e ) {
-          e.printStackTrace();
-        }
-        result.add( window );
-      }
-    }
-    return result;
+  public List<PassageCandidate> extractTextPassages( String id , String text , KeytermMatcher matcher ) {
+    return extractTextPassages( id , text , matcher , Float.NEGATIVE_INFINITY , null );
+  }
 
+  /*
+   * Windows scoring below minScore may be left out. Overlap removal is unaffected, since a window
+   * can only suppress windows which score no better than itself. If boundaries are given, windows
+   * are widened to start and end on them.
+   */
+  public List<PassageCandidate> extractTextPassages( String id , String text , KeytermMatcher matcher , float minScore , int[] boundaries ) {
+    // 1. Find all keyterm matches in one pass, up to keytermMatchLimit matches per keyterm.
+    KeytermMatchTable matches = KeytermMatchTable.forCurrentThread();
+    matcher.findMatches( text , keytermMatchLimit , matches );
+    if ( boundaries != null )
+      matches.alignEdges( boundaries );
+
+    // 2. Enumerate and score the windows defined by the matches.
+    if ( enumerator instanceof PruningKeytermWindowEnumerator )
+      return ( (PruningKeytermWindowEnumerator) enumerator ).enumerateWindows( id , text.length() , matches , passageSizeLimit , scorer , minScore );
+    return enumerator.enumerateWindows( id , text.length() , matches , passageSizeLimit , scorer );
   }
 
   @Override
   public void collectionProcessComplete() throws AnalysisEngineProcessException {
     super.collectionProcessComplete();
+    System.out.println( documentCache );
+    System.out.println( cleanedTextCache );
+    processor.shutdown();
     wrapper.close();
   }
 
@@ -0,0 +1,211 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.Arrays;
+
+/**
+ * The keyterm matches found in one document, stored in parallel primitive arrays rather than as
+ * one object per match. After {@link #finish()} the matches are sorted by end offset, keyterms are
+ * numbered densely from 0 in the order of the question's keyterms, counting only those which
+ * matched, and the distinct begin and end offsets are available as sorted arrays, which are the
+ * left and right edges of the candidate windows.
+ *
+ * A table is meant to be reused for document after document, see {@link #forCurrentThread()}, so
+ * that its arrays are only reallocated when a document has more matches than any before it.
+ */
+public class KeytermMatchTable {
+
+  private static final ThreadLocal<KeytermMatchTable> tables = new ThreadLocal<KeytermMatchTable>() {
+    @Override
+    protected KeytermMatchTable initialValue() {
+      return new KeytermMatchTable();
+    }
+  };
+
+  private int matchCount = 0;
+
+  private int keytermCount = 0;
+
+  private int[] begins = new int[ 64 ];
+
+  private int[] ends = new int[ 64 ];
+
+  private int[] keyterms = new int[ 64 ];
+
+  private int[] sortedBegins = new int[ 64 ];
+
+  private int[] leftEdges = new int[ 64 ];
+
+  private int leftEdgeCount = 0;
+
+  private int[] rightEdges = new int[ 64 ];
+
+  private int rightEdgeCount = 0;
+
+  private long[] sortKeys = new long[ 64 ];
+
+  private int[] keytermIds = new int[ 16 ];
+
+  /* Returns this thread's table, cleared */
+  public static KeytermMatchTable forCurrentThread() {
+    KeytermMatchTable table = tables.get();
+    table.clear();
+    return table;
+  }
+
+  public void clear() {
+    matchCount = 0;
+    keytermCount = 0;
+    leftEdgeCount = 0;
+    rightEdgeCount = 0;
+  }
+
+  /* Adds a match of the keyterm with the given index in the question */
+  public void add( int keyterm , int begin , int end ) {
+    if ( matchCount == begins.length ) {
+      int size = 2 * matchCount;
+      begins = Arrays.copyOf( begins , size );
+      ends = Arrays.copyOf( ends , size );
+      keyterms = Arrays.copyOf( keyterms , size );
+    }
+    begins[ matchCount ] = begin;
+    ends[ matchCount ] = end;
+    keyterms[ matchCount ] = keyterm;
+    matchCount++;
+  }
+
+  /* Sorts the matches, renumbers the keyterms, and collects the window edges */
+  public void finish() {
+    // 1. Number the keyterms which matched, in question order.
+    int maxKeyterm = -1;
+    for ( int i = 0 ; i < matchCount ; i++ )
+      maxKeyterm = Math.max( maxKeyterm , keyterms[ i ] );
+    if ( keytermIds.length <= maxKeyterm )
+      keytermIds = new int[ maxKeyterm + 1 ];
+    Arrays.fill( keytermIds , 0 , maxKeyterm + 1 , -1 );
+    for ( int i = 0 ; i < matchCount ; i++ )
+      keytermIds[ keyterms[ i ] ] = 0;
+    keytermCount = 0;
+    for ( int k = 0 ; k <= maxKeyterm ; k++ )
+      if ( keytermIds[ k ] == 0 )
+        keytermIds[ k ] = keytermCount++;
+    for ( int i = 0 ; i < matchCount ; i++ )
+      keyterms[ i ] = keytermIds[ keyterms[ i ] ];
+
+    // 2. Sort the matches by end offset, using the edge arrays as scratch space.
+    if ( sortKeys.length < begins.length ) {
+      sortKeys = new long[ begins.length ];
+      sortedBegins = new int[ begins.length ];
+      leftEdges = new int[ begins.length ];
+      rightEdges = new int[ begins.length ];
+    }
+    for ( int i = 0 ; i < matchCount ; i++ )
+      sortKeys[ i ] = ( (long) ends[ i ] << 32 ) | i;
+    Arrays.sort( sortKeys , 0 , matchCount );
+    for ( int i = 0 ; i < matchCount ; i++ ) {
+      int m = (int) sortKeys[ i ];
+      leftEdges[ i ] = begins[ m ];
+      rightEdges[ i ] = keyterms[ m ];
+      ends[ i ] = (int) ( sortKeys[ i ] >>> 32 );
+    }
+    System.arraycopy( leftEdges , 0 , begins , 0 , matchCount );
+    System.arraycopy( rightEdges , 0 , keyterms , 0 , matchCount );
+
+    // 3. Collect the distinct edges.
+    System.arraycopy( begins , 0 , sortedBegins , 0 , matchCount );
+    Arrays.sort( sortedBegins , 0 , matchCount );
+    System.arraycopy( sortedBegins , 0 , leftEdges , 0 , matchCount );
+    leftEdgeCount = unique( leftEdges , matchCount );
+    System.arraycopy( ends , 0 , rightEdges , 0 , matchCount );
+    rightEdgeCount = unique( rightEdges , matchCount );
+  }
+
+  /**
+   * Moves every left edge back to the closest boundary at or before it, and every right edge
+   * forward to the closest boundary at or after it, so that windows start and end on sentence or
+   * paragraph boundaries. The boundaries must be sorted and span the whole text.
+   */
+  public void alignEdges( int[] boundaries ) {
+    for ( int i = 0 ; i < leftEdgeCount ; i++ ) {
+      int b = firstAtLeast( boundaries , boundaries.length , leftEdges[ i ] );
+      if ( b == boundaries.length || boundaries[ b ] > leftEdges[ i ] )
+        b--;
+      leftEdges[ i ] = boundaries[ Math.max( b , 0 ) ];
+    }
+    leftEdgeCount = unique( leftEdges , leftEdgeCount );
+    for ( int i = 0 ; i < rightEdgeCount ; i++ ) {
+      int b = firstAtLeast( boundaries , boundaries.length , rightEdges[ i ] );
+      rightEdges[ i ] = boundaries[ Math.min( b , boundaries.length - 1 ) ];
+    }
+    rightEdgeCount = unique( rightEdges , rightEdgeCount );
+  }
+
+  private static int unique( int[] sorted , int length ) {
+    int count = 0;
+    for ( int i = 0 ; i < length ; i++ )
+      if ( count == 0 || sorted[ i ] != sorted[ count - 1 ] )
+        sorted[ count++ ] = sorted[ i ];
+    return count;
+  }
+
+  public int getMatchCount() {
+    return matchCount;
+  }
+
+  /* Number of distinct keyterms with at least one match */
+  public int getKeytermCount() {
+    return keytermCount;
+  }
+
+  public int getBegin( int match ) {
+    return begins[ match ];
+  }
+
+  public int getEnd( int match ) {
+    return ends[ match ];
+  }
+
+  public int getKeyterm( int match ) {
+    return keyterms[ match ];
+  }
+
+  public int getLeftEdgeCount() {
+    return leftEdgeCount;
+  }
+
+  public int getLeftEdge( int i ) {
+    return leftEdges[ i ];
+  }
+
+  public int getRightEdgeCount() {
+    return rightEdgeCount;
+  }
+
+  public int getRightEdge( int i ) {
+    return rightEdges[ i ];
+  }
+
+  // Index of the first match ending at or after the offset.
+  public int firstMatchEndingAtOrAfter( int offset ) {
+    return firstAtLeast( ends , matchCount , offset );
+  }
+
+  // Number of matches which begin in [from, to).
+  public int countMatchesBeginningIn( int from , int to ) {
+    return firstAtLeast( sortedBegins , matchCount , to )
+            - firstAtLeast( sortedBegins , matchCount , from );
+  }
+
+  // Index of the first right edge at or after the offset.
+  public int firstRightEdgeAtOrAfter( int offset ) {
+    return firstAtLeast( rightEdges , rightEdgeCount , offset );
+  }
+
+  private static int firstAtLeast( int[] sorted , int length , int value ) {
+    int lo = 0, hi = length;
+    while ( lo < hi ) {
+      int mid = ( lo + hi ) >>> 1;
+      if ( sorted[ mid ] < value ) lo = mid + 1; else hi = mid;
+    }
+    return lo;
+  }
+}
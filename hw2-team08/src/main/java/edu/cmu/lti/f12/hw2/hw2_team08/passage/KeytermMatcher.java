@@ -0,0 +1,242 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Aho-Corasick automaton over a question's keyterms, which finds the occurrences of all of them in
+ * a single pass over a document. Keyterms are matched literally, so regular expression
+ * metacharacters in keyterms such as "APC (adenomatous polyposis coli)" have no special meaning.
+ *
+ * Like repeated {@link java.util.regex.Matcher#find()} calls, the matches reported for a single
+ * keyterm never overlap each other. Matching can optionally ignore case, and can optionally
+ * require that a match neither starts nor ends in the middle of a token.
+ *
+ * The automaton is immutable once built, so one instance can be shared between threads.
+ */
+public class KeytermMatcher {
+
+  private final String[] keyterms;
+
+  private final boolean caseInsensitive;
+
+  private final boolean tokenBoundary;
+
+  // Trie transitions: sorted labels and their targets, per node.
+  private char[][] labels;
+
+  private int[][] targets;
+
+  private int[] failure;
+
+  // Keyterms ending at each node, and nearest node on the failure chain which has any.
+  private int[][] outputs;
+
+  private int[] outputLink;
+
+  public KeytermMatcher(String[] keyterms) {
+    this(keyterms, false, false);
+  }
+
+  public KeytermMatcher(String[] keyterms, boolean caseInsensitive, boolean tokenBoundary) {
+    this.keyterms = keyterms.clone();
+    this.caseInsensitive = caseInsensitive;
+    this.tokenBoundary = tokenBoundary;
+    build();
+  }
+
+  public int size() {
+    return keyterms.length;
+  }
+
+  public String getKeyterm(int i) {
+    return keyterms[i];
+  }
+
+  /**
+   * Finds the matches of every keyterm in the text, up to <code>matchLimit</code> per keyterm, and
+   * adds them to the table, which is then finished.
+   */
+  public void findMatches(String text, int matchLimit, final KeytermMatchTable table) {
+    scan(text, matchLimit, new MatchHandler() {
+      public void match(int keyterm, int begin, int end) {
+        table.add(keyterm, begin, end);
+      }
+    });
+    table.finish();
+  }
+
+  /**
+   * Finds which keyterms occur in the text at all.
+   */
+  public boolean[] findKeyterms(String text) {
+    final boolean[] found = new boolean[keyterms.length];
+    scan(text, 1, new MatchHandler() {
+      public void match(int keyterm, int begin, int end) {
+        found[keyterm] = true;
+      }
+    });
+    return found;
+  }
+
+  /**
+   * Returns the keyterms which occur in the text, as regular expressions matching them literally.
+   * This lets components which take regular expressions, such as the openqa
+   * <code>PassageCandidateFinder</code>, skip the keyterms which cannot match.
+   */
+  public String[] findKeytermPatterns(String text) {
+    boolean[] found = findKeyterms(text);
+    List<String> patterns = new ArrayList<String>();
+    for (int i = 0; i < keyterms.length; i++)
+      if (found[i])
+        patterns.add(getKeytermPattern(i));
+    return patterns.toArray(new String[0]);
+  }
+
+  /* The keyterm as a regular expression matching it literally, as findKeytermPatterns returns */
+  public String getKeytermPattern(int keyterm) {
+    return (caseInsensitive ? "(?i)" : "") + Pattern.quote(keyterms[keyterm]);
+  }
+
+  /**
+   * Finds all matches in the text, as consecutive (keyterm, begin, end) triples in the order their
+   * ends occur in the text.
+   */
+  public int[] findAllMatches(String text) {
+    final List<int[]> matches = new ArrayList<int[]>();
+    scan(text, Integer.MAX_VALUE, new MatchHandler() {
+      public void match(int keyterm, int begin, int end) {
+        matches.add(new int[] { keyterm, begin, end });
+      }
+    });
+    int[] result = new int[3 * matches.size()];
+    for (int i = 0; i < matches.size(); i++)
+      System.arraycopy(matches.get(i), 0, result, 3 * i, 3);
+    return result;
+  }
+
+  private interface MatchHandler {
+    public void match(int keyterm, int begin, int end);
+  }
+
+  private void scan(String text, int matchLimit, MatchHandler handler) {
+    int[] lastEnd = new int[keyterms.length];
+    int[] matchesFound = new int[keyterms.length];
+    int node = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = fold(text.charAt(i));
+      int next = transition(node, c);
+      while (next < 0 && node != 0) {
+        node = failure[node];
+        next = transition(node, c);
+      }
+      node = next < 0 ? 0 : next;
+      int end = i + 1;
+      for (int out = outputs[node].length > 0 ? node : outputLink[node]; out > 0; out = outputLink[out]) {
+        for (int keyterm : outputs[out]) {
+          int begin = end - keyterms[keyterm].length();
+          if (begin < lastEnd[keyterm] || matchesFound[keyterm] >= matchLimit)
+            continue;
+          if (tokenBoundary && !(isBoundary(text, begin) && isBoundary(text, end)))
+            continue;
+          lastEnd[keyterm] = end;
+          matchesFound[keyterm]++;
+          handler.match(keyterm, begin, end);
+        }
+      }
+    }
+  }
+
+  private char fold(char c) {
+    return caseInsensitive ? Character.toLowerCase(c) : c;
+  }
+
+  private static boolean isBoundary(String text, int offset) {
+    return offset == 0 || offset == text.length()
+            || !Character.isLetterOrDigit(text.charAt(offset - 1))
+            || !Character.isLetterOrDigit(text.charAt(offset));
+  }
+
+  private int transition(int node, char c) {
+    int i = Arrays.binarySearch(labels[node], c);
+    return i < 0 ? -1 : targets[node][i];
+  }
+
+  private void build() {
+    // 1. Build the trie.
+    List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+    List<List<Integer>> trieOutputs = new ArrayList<List<Integer>>();
+    trie.add(new HashMap<Character, Integer>());
+    trieOutputs.add(new ArrayList<Integer>());
+    for (int k = 0; k < keyterms.length; k++) {
+      String keyterm = keyterms[k];
+      if (keyterm.length() == 0)
+        continue;
+      int node = 0;
+      for (int i = 0; i < keyterm.length(); i++) {
+        char c = fold(keyterm.charAt(i));
+        Integer child = trie.get(node).get(c);
+        if (child == null) {
+          child = trie.size();
+          trie.add(new HashMap<Character, Integer>());
+          trieOutputs.add(new ArrayList<Integer>());
+          trie.get(node).put(c, child);
+        }
+        node = child;
+      }
+      trieOutputs.get(node).add(k);
+    }
+
+    // 2. Compile it into sorted transition arrays.
+    int size = trie.size();
+    labels = new char[size][];
+    targets = new int[size][];
+    outputs = new int[size][];
+    for (int node = 0; node < size; node++) {
+      Map<Character, Integer> children = trie.get(node);
+      labels[node] = new char[children.size()];
+      int i = 0;
+      for (Character c : children.keySet())
+        labels[node][i++] = c;
+      Arrays.sort(labels[node]);
+      targets[node] = new int[labels[node].length];
+      for (i = 0; i < labels[node].length; i++)
+        targets[node][i] = children.get(labels[node][i]);
+      List<Integer> nodeOutputs = trieOutputs.get(node);
+      outputs[node] = new int[nodeOutputs.size()];
+      for (i = 0; i < outputs[node].length; i++)
+        outputs[node][i] = nodeOutputs.get(i);
+    }
+
+    // 3. Compute failure and output links breadth first.
+    failure = new int[size];
+    outputLink = new int[size];
+    Queue<Integer> queue = new LinkedList<Integer>();
+    for (int child : targets[0])
+      queue.add(child);
+    while (!queue.isEmpty()) {
+      int node = queue.remove();
+      for (int i = 0; i < labels[node].length; i++) {
+        char c = labels[node][i];
+        int child = targets[node][i];
+        int fallback = failure[node];
+        int next = transition(fallback, c);
+        while (next < 0 && fallback != 0) {
+          fallback = failure[fallback];
+          next = transition(fallback, c);
+        }
+        failure[child] = next < 0 ? 0 : next;
+        outputLink[child] = outputs[failure[child]].length > 0 ? failure[child]
+                : outputLink[failure[child]];
+        queue.add(child);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,16 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.List;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Enumerates the candidate windows of a document from the keyterm matches found in it. Every
+ * window runs from the beginning of some match to the end of some match, is no longer than
+ * <code>passageSizeLimit</code>, and is scored with the given {@link KeytermWindowScorer}.
+ * Windows are returned ordered by left edge, then right edge.
+ */
+public interface KeytermWindowEnumerator {
+  public List<PassageCandidate> enumerateWindows( String id , int textSize ,
+          KeytermMatchTable matches , int passageSizeLimit , KeytermWindowScorer scorer );
+}
@@ -0,0 +1,47 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.List;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Scores every (left edge, right edge) window by rescanning all keyterm matches.
+ */
+public class NestedLoopWindowEnumerator implements KeytermWindowEnumerator {
+
+  @Override
+  public List<PassageCandidate> enumerateWindows( String id , int textSize ,
+          KeytermMatchTable matches , int passageSizeLimit , KeytermWindowScorer scorer ) {
+    int totalKeyterms = matches.getKeytermCount();
+    int totalMatches = matches.getMatchCount();
+
+    // For every possible window, calculate keyterms found, matches found; score window, and create passage candidate.
+    int[] keytermSeen = new int[ totalKeyterms ];
+    int window = 0;
+    WindowBatch windows = WindowBatch.forCurrentThread();
+    for ( int l = 0 ; l < matches.getLeftEdgeCount() ; l++ ) {
+      int begin = matches.getLeftEdge( l );
+      for ( int r = 0 ; r < matches.getRightEdgeCount() ; r++ ) {
+        int end = matches.getRightEdge( r );
+        if ( end <= begin ) continue; 
+        if ( ( end - begin ) > passageSizeLimit ) continue;
+        // keytermSeen holds the number of the last window a keyterm was found in
+        window++;
+        int keytermsFound = 0;
+        int matchesFound = 0;
+        for ( int m = 0 ; m < totalMatches ; m++ ) {
+          if ( begin <= matches.getBegin( m ) && end >= matches.getEnd( m ) ) {
+            matchesFound++;
+            if ( keytermSeen[ matches.getKeyterm( m ) ] != window ) {
+              keytermSeen[ matches.getKeyterm( m ) ] = window;
+              keytermsFound++;
+            }
+          }
+        }
+        windows.add( begin , end , matchesFound , keytermsFound );
+      }
+    }
+    return windows.score( id , totalMatches , totalKeyterms , textSize , scorer );
+  }
+
+}
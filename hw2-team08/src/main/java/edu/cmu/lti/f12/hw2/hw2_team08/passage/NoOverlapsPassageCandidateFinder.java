@@ -1,7 +1,12 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 
@@ -22,49 +27,160 @@ import edu.cmu.lti.oaqa.openqa.hello.passage.PassageCandidateFinder;
  */
 public class NoOverlapsPassageCandidateFinder extends PassageCandidateFinder {
 
+  private OverlapSuppressor suppressor = null;
+
   public NoOverlapsPassageCandidateFinder(String docId, String text, KeytermWindowScorer scorer) {
     super(docId, text, scorer);
   }
 
+  /* Optionally drops the passages which overlap a better one, after merging; null disables it */
+  public void setOverlapSuppressor(OverlapSuppressor suppressor) {
+    this.suppressor = suppressor;
+  }
+
   public List<PassageCandidate> extractPassages(String[] keyterms) {
+    List<PassageCandidate> passages = mergePassages(super.extractPassages(keyterms));
+    if (suppressor != null)
+      return suppressor.suppress(passages);
+    return passages;
+  }
 
-    List<PassageCandidate> passages = super.extractPassages(keyterms);
+  /**
+   * Compares every passage with the passages before it in the list:
+   * <ol>
+   * <li>If we've got two passages such that one consumes the other, then we return the smaller
+   * one (should have all the necessary information)</li>
+   * <li>If two passages are budding, then we make a new passage that incorporates both of them,
+   * with the better of their two scores</li>
+   * </ol>
+   * Passages which are consumed or merged are dropped, together with any passage with the same
+   * offsets, and the merged passages are appended in the order they were made. Passages with the
+   * same offsets count as equal, whatever <code>PassageCandidate.equals</code> says: the finder
+   * never yields two windows with the same offsets, so this only matters for other inputs.
+   *
+   * Instead of comparing all pairs, the consumed passages are found by sweeping the list backwards
+   * over an index of the smallest end offset per start offset, and the budding passages are looked
+   * up by their start and end offsets, so this takes O(n log n) time plus the number of merges.
+   */
+  static List<PassageCandidate> mergePassages(List<PassageCandidate> passages) {
+    int n = passages.size();
+    int[] starts = new int[n];
+    int[] ends = new int[n];
+    // A passage is compared with those before the first passage with its offsets.
+    int[] limit = new int[n];
+    Map<Long, Integer> firstIndex = new HashMap<Long, Integer>();
+    Map<Integer, List<Integer>> byStart = new HashMap<Integer, List<Integer>>();
+    Map<Integer, List<Integer>> byEnd = new HashMap<Integer, List<Integer>>();
+    for (int i = 0; i < n; i++) {
+      PassageCandidate pc = passages.get(i);
+      starts[i] = pc.getStart();
+      ends[i] = pc.getEnd();
+      Long key = ((long) starts[i] << 32) | (ends[i] & 0xffffffffL);
+      Integer first = firstIndex.get(key);
+      if (first == null) {
+        first = i;
+        firstIndex.put(key, first);
+      }
+      limit[i] = first;
+      bucket(byStart, starts[i]).add(i);
+      bucket(byEnd, ends[i]).add(i);
+    }
+    boolean[] ignored = new boolean[n];
 
-    List<PassageCandidate> toIgnore = new LinkedList<PassageCandidate>();
-    List<PassageCandidate> toAdd = new LinkedList<PassageCandidate>();
+    // 1. pc2 is consumed if a later passage pc1 compared with it lies within it. Sweep pc2
+    // backwards, adding each pc1 once pc2 drops below its limit, and keep the smallest end of the
+    // added passages for every start at or after a given one.
+    Integer[] byLimit = new Integer[n];
+    for (int i = 0; i < n; i++)
+      byLimit[i] = i;
+    final int[] limits = limit;
+    Arrays.sort(byLimit, new Comparator<Integer>() {
+      public int compare(Integer i, Integer j) {
+        return limits[j] - limits[i];
+      }
+    });
+    int[] sortedStarts = starts.clone();
+    Arrays.sort(sortedStarts);
+    int[] minEnd = new int[n + 1];
+    Arrays.fill(minEnd, Integer.MAX_VALUE);
+    int added = 0;
+    for (int pc2 = n - 1; pc2 >= 0; pc2--) {
+      while (added < n && limit[byLimit[added]] > pc2) {
+        int pc1 = byLimit[added++];
+        // Fenwick tree over descending start ranks: a prefix covers all starts >= a given one
+        for (int k = n - lowerBound(sortedStarts, starts[pc1]); k <= n; k += k & -k)
+          minEnd[k] = Math.min(minEnd[k], ends[pc1]);
+      }
+      int min = Integer.MAX_VALUE;
+      for (int k = n - lowerBound(sortedStarts, starts[pc2]); k > 0; k -= k & -k)
+        min = Math.min(min, minEnd[k]);
+      if (min <= ends[pc2])
+        ignored[limit[pc2]] = true;
+    }
 
-    // 1. If we've got two passages such that one consumes the other, then
-    // we return the smaller one (should have all the necessary information)
-    // 2. If two passages are budding, then we make a new passage that incorporates both of them
-    for (PassageCandidate pc1 : passages) {
-      for (PassageCandidate pc2 : passages) {
-        if (pc1.equals(pc2))
+    // 2. Merge budding passages, in the order of the original pairwise loop.
+    List<PassageCandidate> toAdd = new ArrayList<PassageCandidate>();
+    List<Integer> empty = Collections.emptyList();
+    for (int i = 0; i < n; i++) {
+      List<Integer> before = byEnd.containsKey(starts[i]) ? byEnd.get(starts[i]) : empty;
+      List<Integer> after = byStart.containsKey(ends[i]) ? byStart.get(ends[i]) : empty;
+      int b = 0, a = 0;
+      while (true) {
+        int nextBefore = b < before.size() ? before.get(b) : Integer.MAX_VALUE;
+        int nextAfter = a < after.size() ? after.get(a) : Integer.MAX_VALUE;
+        int j = Math.min(nextBefore, nextAfter);
+        if (j >= limit[i])
           break;
-        if (pc1.getStart() >= pc2.getStart() && pc1.getEnd() <= pc2.getEnd()) {
-          toIgnore.add(pc2);
-        } else {
-          try {
-            if (pc1.getStart() == pc2.getEnd()) {
-              toAdd.add(new PassageCandidate(pc1.getDocID(), pc2.getStart(), pc1.getEnd(), Math
-                      .max(pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
-              toIgnore.add(pc1);
-              toIgnore.add(pc2);
-            } else if (pc1.getEnd() == pc2.getStart()) {
-              toAdd.add(new PassageCandidate(pc1.getDocID(), pc1.getStart(), pc2.getEnd(), Math
-                      .max(pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
-              toIgnore.add(pc1);
-              toIgnore.add(pc2);
-            }
-          } catch (AnalysisEngineProcessException e) {
-            e.printStackTrace();
+        if (j == nextBefore)
+          b++;
+        if (j == nextAfter)
+          a++;
+        if (starts[i] >= starts[j] && ends[i] <= ends[j])
+          continue;
+        PassageCandidate pc1 = passages.get(i);
+        PassageCandidate pc2 = passages.get(j);
+        try {
+          if (starts[i] == ends[j]) {
+            toAdd.add(new PassageCandidate(pc1.getDocID(), starts[j], ends[i], Math.max(
+                    pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
+          } else {
+            toAdd.add(new PassageCandidate(pc1.getDocID(), starts[i], ends[j], Math.max(
+                    pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
           }
+          ignored[limit[i]] = true;
+          ignored[limit[j]] = true;
+        } catch (AnalysisEngineProcessException e) {
+          e.printStackTrace();
         }
       }
     }
 
-    passages.removeAll(toIgnore);
-    passages.addAll(toAdd);
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
+    for (int i = 0; i < n; i++)
+      if (!ignored[limit[i]])
+        result.add(passages.get(i));
+    result.addAll(toAdd);
+    return result;
+  }
 
-    return passages;
+  private static List<Integer> bucket(Map<Integer, List<Integer>> buckets, int offset) {
+    List<Integer> bucket = buckets.get(offset);
+    if (bucket == null) {
+      bucket = new ArrayList<Integer>();
+      buckets.put(offset, bucket);
+    }
+    return bucket;
+  }
+
+  private static int lowerBound(int[] a, int key) {
+    int lo = 0, hi = a.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (a[mid] < key)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
   }
 }
@@ -0,0 +1,246 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Drops the passages which overlap a better one, the way EhnKeytermPassageExtractor always has:
+ * the passages are visited in order, and each passage not yet dropped is compared with every
+ * passage after it. When their {@link #overlapRatio} exceeds the threshold, the later passage is
+ * dropped if its score is not higher, and the earlier one is dropped otherwise. A passage which is
+ * dropped while it is compared still drops the later passages it beats, but one dropped by an
+ * earlier passage is not compared at all. The remaining passages are returned in their order.
+ *
+ * Instead of comparing every pair, the passages after the current one are kept in two segment
+ * trees, over the passages sorted by start offset and by end offset, which hold the largest end
+ * and smallest start offset below each node. Only the passages with a positive overlap ratio are
+ * looked up in them, which takes O((n + k) log n) time for k such pairs, instead of O(n^2).
+ */
+public class OverlapSuppressor {
+
+  private final double overlapThreshold;
+
+  public OverlapSuppressor(double overlapThreshold) {
+    this.overlapThreshold = overlapThreshold;
+  }
+
+  public double getOverlapThreshold() {
+    return overlapThreshold;
+  }
+
+  /**
+   * The length of the overlap of two passages over the length of their union, when one of them
+   * starts and the other ends inside both, i.e. they overlap without either strictly containing
+   * the other. 0 otherwise.
+   */
+  public static double overlapRatio(PassageCandidate p1, PassageCandidate p2) {
+    int p1s = p1.getStart(); int p1e = p1.getEnd();
+    int p2s = p2.getStart(); int p2e = p2.getEnd();
+    int overlapSize = 0; int totalSize = 0;
+    if (p1s <= p2s && p1e <= p2e && p2s < p1e) {
+      overlapSize = p1e - p2s;
+      totalSize = p2e - p1s;
+    } else if (p2s <= p1s && p2e <= p1e && p1s < p2e) {
+      overlapSize = p2e - p1s;
+      totalSize = p1e - p2s;
+    }
+    return (overlapSize == 0) ? 0.0d : (double) overlapSize / (double) totalSize;
+  }
+
+  public List<PassageCandidate> suppress(List<PassageCandidate> passages) {
+    int n = passages.size();
+    boolean[] overlapping = new boolean[n];
+    if (overlapThreshold < 0.0d) {
+      // every pair of passages exceeds the threshold, even disjoint ones, so compare them all
+      for (int i = 0; i < n; i++) {
+        if (overlapping[i])
+          continue;
+        for (int j = i + 1; j < n; j++)
+          compare(passages, i, j, overlapping);
+      }
+    } else {
+      OverlapIndex index = new OverlapIndex(passages);
+      List<Integer> overlaps = new ArrayList<Integer>();
+      for (int i = 0; i < n; i++) {
+        // the index only holds the passages after the current one
+        index.remove(i);
+        if (overlapping[i])
+          continue;
+        overlaps.clear();
+        index.findOverlaps(i, overlaps);
+        for (int j : overlaps)
+          compare(passages, i, j, overlapping);
+      }
+    }
+
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
+    for (int i = 0; i < n; i++)
+      if (!overlapping[i])
+        result.add(passages.get(i));
+    return result;
+  }
+
+  private void compare(List<PassageCandidate> passages, int i, int j, boolean[] overlapping) {
+    PassageCandidate p1 = passages.get(i);
+    PassageCandidate p2 = passages.get(j);
+    if (overlapRatio(p1, p2) > overlapThreshold) {
+      if (p1.getProbability() >= p2.getProbability())
+        overlapping[j] = true;
+      else
+        overlapping[i] = true;
+    }
+  }
+
+  /*
+   * The passages with a positive overlap ratio with a passage p either start within p and end at
+   * or after its end, or end within p and start at or before its start. The first are found in a
+   * segment tree over the passages sorted by start which holds the largest end below each node,
+   * the others in one over the passages sorted by end which holds the smallest start.
+   */
+  private static class OverlapIndex {
+
+    private final List<PassageCandidate> passages;
+
+    private final int size;
+
+    private final int[] byStart;
+
+    private final int[] sortedStarts;
+
+    private final int[] startPosition;
+
+    private final int[] maxEnd;
+
+    private final int[] byEnd;
+
+    private final int[] sortedEnds;
+
+    private final int[] endPosition;
+
+    private final int[] minStart;
+
+    OverlapIndex(final List<PassageCandidate> passages) {
+      this.passages = passages;
+      int n = passages.size();
+      int s = 1;
+      while (s < n)
+        s <<= 1;
+      size = s;
+
+      byStart = sortedOrder(passages, true);
+      sortedStarts = new int[n];
+      startPosition = new int[n];
+      maxEnd = new int[2 * size];
+      Arrays.fill(maxEnd, Integer.MIN_VALUE);
+      for (int k = 0; k < n; k++) {
+        sortedStarts[k] = passages.get(byStart[k]).getStart();
+        startPosition[byStart[k]] = k;
+        maxEnd[size + k] = passages.get(byStart[k]).getEnd();
+      }
+
+      byEnd = sortedOrder(passages, false);
+      sortedEnds = new int[n];
+      endPosition = new int[n];
+      minStart = new int[2 * size];
+      Arrays.fill(minStart, Integer.MAX_VALUE);
+      for (int k = 0; k < n; k++) {
+        sortedEnds[k] = passages.get(byEnd[k]).getEnd();
+        endPosition[byEnd[k]] = k;
+        minStart[size + k] = passages.get(byEnd[k]).getStart();
+      }
+
+      for (int node = size - 1; node > 0; node--) {
+        maxEnd[node] = Math.max(maxEnd[2 * node], maxEnd[2 * node + 1]);
+        minStart[node] = Math.min(minStart[2 * node], minStart[2 * node + 1]);
+      }
+    }
+
+    private static int[] sortedOrder(final List<PassageCandidate> passages, final boolean byStart) {
+      int n = passages.size();
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++)
+        order[i] = i;
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer i, Integer j) {
+          int oi = byStart ? passages.get(i).getStart() : passages.get(i).getEnd();
+          int oj = byStart ? passages.get(j).getStart() : passages.get(j).getEnd();
+          return oi < oj ? -1 : (oi > oj ? 1 : 0);
+        }
+      });
+      int[] result = new int[n];
+      for (int k = 0; k < n; k++)
+        result[k] = order[k];
+      return result;
+    }
+
+    void remove(int i) {
+      int node = size + startPosition[i];
+      maxEnd[node] = Integer.MIN_VALUE;
+      for (node >>= 1; node > 0; node >>= 1)
+        maxEnd[node] = Math.max(maxEnd[2 * node], maxEnd[2 * node + 1]);
+      node = size + endPosition[i];
+      minStart[node] = Integer.MAX_VALUE;
+      for (node >>= 1; node > 0; node >>= 1)
+        minStart[node] = Math.min(minStart[2 * node], minStart[2 * node + 1]);
+    }
+
+    /* Adds the passages in the index with a positive overlap ratio with passage i */
+    void findOverlaps(int i, List<Integer> overlaps) {
+      PassageCandidate p = passages.get(i);
+      int start = p.getStart();
+      int end = p.getEnd();
+      if (start >= end)
+        return;
+      // starting in [start, end) and ending at or after end
+      findEndingAfter(1, 0, size, lowerBound(sortedStarts, start), lowerBound(sortedStarts, end),
+              end, overlaps);
+      // ending in (start, end] and starting at or before start, except those with p's offsets
+      findStartingBefore(1, 0, size, lowerBound(sortedEnds, start + 1), lowerBound(sortedEnds,
+              end + 1), start, end, overlaps);
+    }
+
+    private void findEndingAfter(int node, int lo, int hi, int from, int to, int end,
+            List<Integer> overlaps) {
+      if (hi <= from || lo >= to || maxEnd[node] < end)
+        return;
+      if (node >= size) {
+        overlaps.add(byStart[lo]);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      findEndingAfter(2 * node, lo, mid, from, to, end, overlaps);
+      findEndingAfter(2 * node + 1, mid, hi, from, to, end, overlaps);
+    }
+
+    private void findStartingBefore(int node, int lo, int hi, int from, int to, int start,
+            int end, List<Integer> overlaps) {
+      if (hi <= from || lo >= to || minStart[node] > start)
+        return;
+      if (node >= size) {
+        PassageCandidate other = passages.get(byEnd[lo]);
+        if (other.getStart() != start || other.getEnd() != end)
+          overlaps.add(byEnd[lo]);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      findStartingBefore(2 * node, lo, mid, from, to, start, end, overlaps);
+      findStartingBefore(2 * node + 1, mid, hi, from, to, start, end, overlaps);
+    }
+
+    private static int lowerBound(int[] a, int key) {
+      int lo = 0, hi = a.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (a[mid] < key)
+          lo = mid + 1;
+        else
+          hi = mid;
+      }
+      return lo;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+import edu.cmu.lti.oaqa.framework.data.RetrievalResult;
+
+/**
+ * Runs a passage extractor's per-document work (fetching, cleaning and scanning one document) on
+ * a fixed pool of worker threads. The candidate lists of the documents are concatenated in the
+ * order of the hit list, so the result does not depend on which document finishes first. The
+ * candidates can also be handed to a collection such as {@link TopKPassageCollector} as each
+ * document is done, instead of being gathered into one list.
+ *
+ * With a parallelism of 1 or less no threads are created and the documents are processed one by
+ * one in the calling thread, as before.
+ */
+public class ParallelDocumentProcessor {
+
+  /* The work done for a single document; must be safe to call from several threads at once */
+  public interface DocumentExtractor {
+    public List<PassageCandidate> extract(RetrievalResult document);
+  }
+
+  private final int parallelism;
+
+  private final ExecutorService executor;
+
+  public ParallelDocumentProcessor(int parallelism) {
+    this.parallelism = parallelism;
+    if (parallelism > 1) {
+      executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "passage-worker-" + (++count));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    } else {
+      executor = null;
+    }
+  }
+
+  /*
+   * The parallelism configured for an extractor which fetches documents through a SolrWrapper.
+   * The workers fetch concurrently, which is only safe when the wrapper talks to Solr over HTTP,
+   * so an embedded server always gets a parallelism of 1.
+   */
+  public static int solrParallelism(Integer parallelism, Boolean embedded) {
+    int result = parallelism == null ? 1 : parallelism;
+    if (result > 1 && Boolean.TRUE.equals(embedded)) {
+      System.err.println("An embedded Solr server cannot be used from several threads, "
+              + "using a parallelism of 1 instead of " + result);
+      return 1;
+    }
+    return result;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public List<PassageCandidate> process(List<RetrievalResult> documents,
+          DocumentExtractor extractor) {
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
+    process(documents, extractor, result);
+    return result;
+  }
+
+  /* Adds the candidates of each document to the sink, in hit-list order */
+  public void process(List<RetrievalResult> documents, final DocumentExtractor extractor,
+          Collection<? super PassageCandidate> sink) {
+    if (executor == null || documents.size() < 2) {
+      for (RetrievalResult document : documents)
+        sink.addAll(extractor.extract(document));
+      return;
+    }
+    List<Future<List<PassageCandidate>>> futures = new ArrayList<Future<List<PassageCandidate>>>();
+    for (final RetrievalResult document : documents) {
+      futures.add(executor.submit(new Callable<List<PassageCandidate>>() {
+        public List<PassageCandidate> call() {
+          return extractor.extract(document);
+        }
+      }));
+    }
+    try {
+      for (Future<List<PassageCandidate>> future : futures)
+        sink.addAll(future.get());
+    } catch (InterruptedException e) {
+      for (Future<List<PassageCandidate>> future : futures)
+        future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      for (Future<List<PassageCandidate>> future : futures)
+        future.cancel(true);
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  public void shutdown() {
+    if (executor != null)
+      executor.shutdownNow();
+  }
+}
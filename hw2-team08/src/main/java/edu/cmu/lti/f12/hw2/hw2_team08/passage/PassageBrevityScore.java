@@ -1,6 +1,6 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
-public class PassageBrevityScore implements KeytermWindowScorer {
+public class PassageBrevityScore implements BatchKeytermWindowScorer, BoundedKeytermWindowScorer {
   @Override
   public double scoreWindow(int begin, int end, int matchesFound,
       int totalMatches, int keytermsFound, int totalKeyterms,
@@ -8,4 +8,19 @@ public class PassageBrevityScore implements KeytermWindowScorer {
     int windowSize = end - begin;
     return 1 - ( (double)windowSize / (double)textSize );
   }
+
+  @Override
+  public void scoreWindows(int count, int[] begins, int[] ends, int[] matchesFound,
+      int totalMatches, int[] keytermsFound, int totalKeyterms, int textSize,
+      double[] scores) {
+    double size = (double)textSize;
+    for ( int i = 0 ; i < count ; i++ )
+      scores[ i ] = 1 - ( (double)( ends[ i ] - begins[ i ] ) / size );
+  }
+
+  @Override
+  public double upperBound(int minBegin, int minWindowSize, int maxMatchesFound,
+      int totalMatches, int maxKeytermsFound, int totalKeyterms, int textSize) {
+    return 1 - ( (double)minWindowSize / (double)textSize );
+  }
 }
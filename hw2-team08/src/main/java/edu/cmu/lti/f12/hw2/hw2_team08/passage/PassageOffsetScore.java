@@ -1,10 +1,25 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
-public class PassageOffsetScore implements KeytermWindowScorer {
+public class PassageOffsetScore implements BatchKeytermWindowScorer, BoundedKeytermWindowScorer {
   @Override
   public double scoreWindow(int begin, int end, int matchesFound,
       int totalMatches, int keytermsFound, int totalKeyterms,
       int textSize) {
     return ( (double)textSize - (double)begin ) / (double)textSize;
   }
+
+  @Override
+  public void scoreWindows(int count, int[] begins, int[] ends, int[] matchesFound,
+      int totalMatches, int[] keytermsFound, int totalKeyterms, int textSize,
+      double[] scores) {
+    double size = (double)textSize;
+    for ( int i = 0 ; i < count ; i++ )
+      scores[ i ] = ( size - (double)begins[ i ] ) / size;
+  }
+
+  @Override
+  public double upperBound(int minBegin, int minWindowSize, int maxMatchesFound,
+      int totalMatches, int maxKeytermsFound, int totalKeyterms, int textSize) {
+    return ( (double)textSize - (double)minBegin ) / (double)textSize;
+  }
 }
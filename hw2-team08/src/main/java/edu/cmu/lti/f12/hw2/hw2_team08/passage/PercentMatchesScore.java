@@ -1,11 +1,25 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
-public class PercentMatchesScore implements KeytermWindowScorer {
+public class PercentMatchesScore implements BatchKeytermWindowScorer, BoundedKeytermWindowScorer {
   @Override
   public double scoreWindow(int begin, int end, int matchesFound,
       int totalMatches, int keytermsFound, int totalKeyterms,
       int textSize) {
     return (double)matchesFound / (double)totalMatches;
   }
-  
+
+  @Override
+  public void scoreWindows(int count, int[] begins, int[] ends, int[] matchesFound,
+      int totalMatches, int[] keytermsFound, int totalKeyterms, int textSize,
+      double[] scores) {
+    double total = (double)totalMatches;
+    for ( int i = 0 ; i < count ; i++ )
+      scores[ i ] = (double)matchesFound[ i ] / total;
+  }
+
+  @Override
+  public double upperBound(int minBegin, int minWindowSize, int maxMatchesFound,
+      int totalMatches, int maxKeytermsFound, int totalKeyterms, int textSize) {
+    return (double)maxMatchesFound / (double)totalMatches;
+  }
 }
@@ -0,0 +1,16 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.List;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * A {@link KeytermWindowEnumerator} which can skip the windows that are known to score below
+ * <code>minScore</code>, when the scorer is a {@link BoundedKeytermWindowScorer}. Windows scoring
+ * at least <code>minScore</code> are always returned, so pruning never changes which windows make
+ * a ranking whose cutoff is <code>minScore</code>.
+ */
+public interface PruningKeytermWindowEnumerator extends KeytermWindowEnumerator {
+  public List<PassageCandidate> enumerateWindows( String id , int textSize ,
+          KeytermMatchTable matches , int passageSizeLimit , KeytermWindowScorer scorer , float minScore );
+}
@@ -1,60 +1,118 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.passage;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.solr.client.solrj.SolrServerException;
-import org.jsoup.Jsoup;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.ResourceInitializationException;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 
+import edu.cmu.lti.f12.hw2.hw2_team08.util.CleanedTextCache;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.DocumentTextCache;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.NormalizedText;
 import edu.cmu.lti.oaqa.cse.basephase.ie.AbstractPassageExtractor;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
 import edu.cmu.lti.oaqa.framework.data.RetrievalResult;
 import edu.cmu.lti.oaqa.openqa.hello.passage.KeytermWindowScorerSum;
-import edu.cmu.lti.oaqa.openqa.hello.passage.PassageCandidateFinder;
 import edu.cmu.lti.oaqa.openqa.hello.passage.SimplePassageExtractor;
 
 public class SimpleBioPassageExtractor extends SimplePassageExtractor {
 
+  private DocumentTextCache documentCache;
+
+  private CleanedTextCache cleanedTextCache;
+
+  private boolean rawOffsets;
+
+  private ParallelDocumentProcessor processor;
+
+  private ChunkedPassageScanner scanner;
+
+  @Override
+  public void initialize(UimaContext aContext) throws ResourceInitializationException {
+    super.initialize(aContext);
+    documentCache = DocumentTextCache.getInstance();
+    Integer documentCacheSize = (Integer) aContext.getConfigParameterValue("documentCacheSize");
+    if (documentCacheSize != null)
+      documentCache.setMaxWeight(documentCacheSize);
+    cleanedTextCache = CleanedTextCache.getInstance();
+    String cleanedTextCacheDir = (String) aContext.getConfigParameterValue("cleanedTextCacheDir");
+    if (cleanedTextCacheDir != null)
+      cleanedTextCache.setDirectory(new File(cleanedTextCacheDir));
+    rawOffsets = Boolean.TRUE.equals(aContext.getConfigParameterValue("rawOffsets"));
+    Integer parallelism = (Integer) aContext.getConfigParameterValue("parallelism");
+    processor = new ParallelDocumentProcessor(ParallelDocumentProcessor.solrParallelism(
+            parallelism, (Boolean) aContext.getConfigParameterValue("embedded")));
+    Integer segmentSize = (Integer) aContext.getConfigParameterValue("segmentSize");
+    Integer segmentOverlap = (Integer) aContext.getConfigParameterValue("segmentOverlap");
+    try {
+      scanner = new ChunkedPassageScanner(segmentSize == null ? 5000 : segmentSize,
+              segmentOverlap == null ? 1000 : segmentOverlap);
+    } catch (IllegalArgumentException e) {
+      throw new ResourceInitializationException(e);
+    }
+  }
+
   @Override
   protected List<PassageCandidate> extractPassages(String question, List<Keyterm> keyterms,
           List<RetrievalResult> documents) {
+    List<String> keytermStrings = Lists.transform(keyterms, new Function<Keyterm, String>() {
+      public String apply(Keyterm keyterm) {
+        return keyterm.getText();
+      }
+    });
+    final KeytermMatcher matcher = new KeytermMatcher(keytermStrings.toArray(new String[0]));
+
+    return processor.process(documents, new ParallelDocumentProcessor.DocumentExtractor() {
+      public List<PassageCandidate> extract(RetrievalResult document) {
+        return extractDocumentPassages(document, matcher);
+      }
+    });
+  }
+
+  /* Fetches, cleans and scans a single document; called concurrently when parallelism > 1 */
+  private List<PassageCandidate> extractDocumentPassages(RetrievalResult document,
+          KeytermMatcher matcher) {
     List<PassageCandidate> result = new ArrayList<PassageCandidate>();
-    for (RetrievalResult document : documents) {
-      System.out.println("RetrievalResult: " + document.toString());
-      String id = document.getDocID();
-      try {
-        String htmlText = wrapper.getDocText(id);
-
-        // cleaning HTML text
-        String text = Jsoup.parse(htmlText).text().replaceAll("([\177-\377\0-\32]*)", "")/* .trim() */;
-        // for now, making sure the text isn't too long
-        text = text.substring(0, Math.min(5000, text.length()));
-        System.out.println(text);
-
-        PassageCandidateFinder finder = new PassageCandidateFinder(id, text,
-                new KeytermWindowScorerSum());
-        List<String> keytermStrings = Lists.transform(keyterms, new Function<Keyterm, String>() {
-          public String apply(Keyterm keyterm) {
-            return keyterm.getText();
-          }
-        });
-        List<PassageCandidate> passageSpans = finder.extractPassages(keytermStrings
-                .toArray(new String[0]));
-        for (PassageCandidate passageSpan : passageSpans) {
-          System.out.println(passageSpan);
-          result.add(passageSpan);
-        }
-      } catch (SolrServerException e) {
-        e.printStackTrace();
+    System.out.println("RetrievalResult: " + document.toString());
+    String id = document.getDocID();
+    try {
+      String htmlText = documentCache.getDocText(wrapper, id);
+
+      // cleaning HTML text
+      NormalizedText normalized = cleanedTextCache.getNormalizedText(id, htmlText);
+      String text = normalized.getText();
+      System.out.println(text);
+
+      // scan the whole text in overlapping segments, which keeps the finder's cost bounded
+      List<PassageCandidate> passageSpans = scanner.scan(id, text, matcher,
+              new KeytermWindowScorerSum());
+      for (PassageCandidate passageSpan : passageSpans) {
+        System.out.println(passageSpan);
+        result.add(rawOffsets ? normalized.toRawPassage(passageSpan) : passageSpan);
       }
+    } catch (SolrServerException e) {
+      e.printStackTrace();
+    } catch (AnalysisEngineProcessException e) {
+      e.printStackTrace();
     }
     return result;
   }
 
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    super.collectionProcessComplete();
+    System.out.println(documentCache);
+    System.out.println(cleanedTextCache);
+    processor.shutdown();
+  }
+
   public static int main(String[] args) {
     return 2;
   }
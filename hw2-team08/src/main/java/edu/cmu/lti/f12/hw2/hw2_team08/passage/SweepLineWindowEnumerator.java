@@ -0,0 +1,78 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Produces the same windows, in the same order, as {@link NestedLoopWindowEnumerator}, but
+ * without rescanning every match for every window.
+ *
+ * The match table keeps the matches sorted by their end offset. For each left edge we sweep the
+ * right edges in increasing order, adding the matches that start at or after the left edge and
+ * end at or before the current right edge to running per-keyterm counters, so that the counts for
+ * each window are available in amortized constant time.
+ *
+ * When pruning, all windows sharing a left edge are skipped if an upper bound on their scores is
+ * below the minimum score. The bound assumes the shortest window of the left edge contains every
+ * match beginning within <code>passageSizeLimit</code> of it.
+ */
+public class SweepLineWindowEnumerator implements PruningKeytermWindowEnumerator {
+
+  // Slack for rounding differences between a bound and the scores it bounds.
+  private static final double BOUND_EPSILON = 1e-9;
+
+  @Override
+  public List<PassageCandidate> enumerateWindows( String id , int textSize ,
+          KeytermMatchTable matches , int passageSizeLimit , KeytermWindowScorer scorer ) {
+    return enumerateWindows( id , textSize , matches , passageSizeLimit , scorer , Float.NEGATIVE_INFINITY );
+  }
+
+  @Override
+  public List<PassageCandidate> enumerateWindows( String id , int textSize ,
+          KeytermMatchTable matches , int passageSizeLimit , KeytermWindowScorer scorer , float minScore ) {
+    int totalKeyterms = matches.getKeytermCount();
+    int totalMatches = matches.getMatchCount();
+    BoundedKeytermWindowScorer bounded = minScore > Float.NEGATIVE_INFINITY
+            && scorer instanceof BoundedKeytermWindowScorer ? (BoundedKeytermWindowScorer) scorer : null;
+
+    int[] keytermCounts = new int[ totalKeyterms ];
+    WindowBatch windows = WindowBatch.forCurrentThread();
+    for ( int l = 0 ; l < matches.getLeftEdgeCount() ; l++ ) {
+      int begin = matches.getLeftEdge( l );
+      int first = matches.firstRightEdgeAtOrAfter( begin + 1 );
+      if ( first == matches.getRightEdgeCount() || matches.getRightEdge( first ) - begin > passageSizeLimit )
+        continue;
+      if ( bounded != null ) {
+        int maxMatches = matches.countMatchesBeginningIn( begin ,
+                (int) Math.min( (long) begin + passageSizeLimit , Integer.MAX_VALUE ) );
+        double bound = bounded.upperBound( begin , matches.getRightEdge( first ) - begin , maxMatches ,
+                totalMatches , Math.min( maxMatches , totalKeyterms ) , totalKeyterms , textSize );
+        if ( (float) ( bound + BOUND_EPSILON ) < minScore )
+          continue;
+      }
+      Arrays.fill( keytermCounts , 0 );
+      int matchesFound = 0;
+      int keytermsFound = 0;
+      int next = matches.firstMatchEndingAtOrAfter( begin );
+      for ( int r = first ; r < matches.getRightEdgeCount()
+              && matches.getRightEdge( r ) - begin <= passageSizeLimit ; r++ ) {
+        int end = matches.getRightEdge( r );
+        while ( next < totalMatches && matches.getEnd( next ) <= end ) {
+          if ( matches.getBegin( next ) >= begin ) {
+            matchesFound++;
+            if ( keytermCounts[ matches.getKeyterm( next ) ]++ == 0 )
+              keytermsFound++;
+          }
+          next++;
+        }
+        windows.add( begin , end , matchesFound , keytermsFound );
+      }
+    }
+
+    // Score all windows of the document at once.
+    return windows.score( id , totalMatches , totalKeyterms , textSize , scorer );
+  }
+
+}
@@ -0,0 +1,144 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Keeps the best <code>k</code> of the passages added to it, so that ranking the passages of a
+ * whole hit list needs memory for <code>k</code> candidates instead of for every window.
+ *
+ * Passages are ranked as by {@link PassageCandidateComparator}; passages with equal scores keep
+ * the order in which they were added. {@link #getTopPassages()} therefore returns the same list
+ * as sorting all added passages with a stable sort and keeping the first <code>k</code>.
+ */
+public class TopKPassageCollector extends AbstractCollection<PassageCandidate> {
+
+  private final int k;
+
+  private final Comparator<PassageCandidate> comparator;
+
+  // Worst passage at the head: lowest ranked, and the latest added among equals.
+  private final PriorityQueue<Entry> heap;
+
+  private long added = 0;
+
+  // Score of the k-th best passage once k have been kept; read by other threads to prune windows.
+  private volatile float threshold = Float.NEGATIVE_INFINITY;
+
+  public TopKPassageCollector(int k) {
+    this(k, new PassageCandidateComparator());
+  }
+
+  public TopKPassageCollector(int k, Comparator<PassageCandidate> comparator) {
+    this.k = k;
+    this.comparator = comparator;
+    this.heap = new PriorityQueue<Entry>(Math.max(1, Math.min(k, 1024) + 1),
+            Collections.reverseOrder());
+    if (k <= 0)
+      threshold = Float.POSITIVE_INFINITY;
+  }
+
+  @Override
+  public boolean add(PassageCandidate passage) {
+    Entry entry = new Entry(passage, added++);
+    if (heap.size() < k) {
+      heap.add(entry);
+      updateThreshold();
+      return true;
+    }
+    if (k > 0 && entry.compareTo(heap.peek()) < 0) {
+      heap.poll();
+      heap.add(entry);
+      updateThreshold();
+      return true;
+    }
+    return false;
+  }
+
+  private void updateThreshold() {
+    if (heap.size() == k)
+      threshold = heap.peek().passage.getProbability();
+  }
+
+  /**
+   * Passages which score below the threshold can no longer be kept, no matter what is added. It is
+   * minus infinity until <code>k</code> passages have been added, and only increases afterwards,
+   * so a value read earlier, also from another thread, is always safe to prune with. It assumes
+   * passages are ranked by probability, as {@link PassageCandidateComparator} does.
+   */
+  public float getThreshold() {
+    return threshold;
+  }
+
+  /* Number of passages added so far, including those which did not make the top k */
+  public long getAdded() {
+    return added;
+  }
+
+  @Override
+  public int size() {
+    return heap.size();
+  }
+
+  /* The passages kept, in no particular order */
+  @Override
+  public Iterator<PassageCandidate> iterator() {
+    final Iterator<Entry> it = heap.iterator();
+    return new Iterator<PassageCandidate>() {
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      public PassageCandidate next() {
+        return it.next().passage;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /* The passages kept, best first */
+  public List<PassageCandidate> getTopPassages() {
+    List<Entry> entries = new ArrayList<Entry>(heap);
+    Collections.sort(entries);
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>(entries.size());
+    for (Entry entry : entries)
+      result.add(entry.passage);
+    return result;
+  }
+
+  @Override
+  public void clear() {
+    heap.clear();
+    added = 0;
+    threshold = k <= 0 ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+  }
+
+  private class Entry implements Comparable<Entry> {
+    final PassageCandidate passage;
+
+    final long sequence;
+
+    Entry(PassageCandidate passage, long sequence) {
+      this.passage = passage;
+      this.sequence = sequence;
+    }
+
+    // Best first: by the comparator, then by the order added.
+    public int compareTo(Entry other) {
+      int c = comparator.compare(passage, other.passage);
+      if (c != 0)
+        return c;
+      return sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * The windows of one document in parallel primitive arrays, so that they can be handed to a
+ * {@link BatchKeytermWindowScorer} in one call. Each thread reuses one batch, see
+ * {@link #forCurrentThread()}.
+ */
+class WindowBatch {
+
+  private static final ThreadLocal<WindowBatch> batches = new ThreadLocal<WindowBatch>() {
+    @Override
+    protected WindowBatch initialValue() {
+      return new WindowBatch();
+    }
+  };
+
+  int count = 0;
+
+  int[] begins = new int[ 256 ];
+
+  int[] ends = new int[ 256 ];
+
+  int[] matchesFound = new int[ 256 ];
+
+  int[] keytermsFound = new int[ 256 ];
+
+  double[] scores = new double[ 256 ];
+
+  /* Returns this thread's batch, emptied */
+  static WindowBatch forCurrentThread() {
+    WindowBatch batch = batches.get();
+    batch.count = 0;
+    return batch;
+  }
+
+  void add( int begin , int end , int matches , int keyterms ) {
+    if ( count == begins.length )
+      grow();
+    begins[ count ] = begin;
+    ends[ count ] = end;
+    matchesFound[ count ] = matches;
+    keytermsFound[ count ] = keyterms;
+    count++;
+  }
+
+  /* Scores the windows, and returns them as passage candidates in the order they were added */
+  List<PassageCandidate> score( String id , int totalMatches , int totalKeyterms , int textSize ,
+          KeytermWindowScorer scorer ) {
+    BatchScorerAdapter.adapt( scorer ).scoreWindows( count , begins , ends , matchesFound ,
+            totalMatches , keytermsFound , totalKeyterms , textSize , scores );
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>( count );
+    for ( int i = 0 ; i < count ; i++ ) {
+      PassageCandidate window = null;
+      try {
+        window = new PassageCandidate( id , begins[ i ] , ends[ i ] , (float) scores[ i ] , null );
+      } catch ( AnalysisEngineProcessException e ) {
+        e.printStackTrace();
+      }
+      result.add( window );
+    }
+    return result;
+  }
+
+  private void grow() {
+    int size = 2 * begins.length;
+    begins = Arrays.copyOf( begins , size );
+    ends = Arrays.copyOf( ends , size );
+    matchesFound = Arrays.copyOf( matchesFound , size );
+    keytermsFound = Arrays.copyOf( keytermsFound , size );
+    scores = Arrays.copyOf( scores , size );
+  }
+}
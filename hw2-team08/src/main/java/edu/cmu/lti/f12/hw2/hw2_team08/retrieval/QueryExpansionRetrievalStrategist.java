@@ -1,10 +1,12 @@
 package edu.cmu.lti.f12.hw2.hw2_team08.retrieval;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.uima.UimaContext;
@@ -13,6 +15,8 @@ import org.apache.uima.resource.ResourceInitializationException;
 
 import edu.cmu.lti.f12.hw2.hw2_team08.qexpansion.AbstractQueryExpander;
 import edu.cmu.lti.f12.hw2.hw2_team08.qexpansion.ExpanderFactory;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.AsyncSolrClient;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.DocumentTextCache;
 import edu.cmu.lti.oaqa.core.provider.solr.SolrWrapper;
 import edu.cmu.lti.oaqa.cse.basephase.retrieval.AbstractRetrievalStrategist;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
@@ -23,6 +27,16 @@ import edu.cmu.lti.oaqa.framework.data.RetrievalResult;
  * get the similar words of keyterms and use these words to formulate a new
  * Lucene query.
  * 
+ * Like the SimpleBioSolrRetrievalStrategist, it can send its queries through an
+ * {@link AsyncSolrClient} and prefetch the text of the hits, see the
+ * <code>max-in-flight</code>, <code>max-queued</code> and
+ * <code>prefetch-documents</code> parameters, and cache its hits with
+ * <code>retrieval-cache-dir</code>, which pays off when sweeping
+ * <code>expand-factor</code> or <code>hit-list-size</code>; change
+ * <code>retrieval-cache-generation</code> after rebuilding the index. With
+ * <code>fetch-text</code> set, the text of the hits comes with them, see the
+ * SimpleBioSolrRetrievalStrategist.
+ * 
  * @author Yuan Gu <yuangu@andrew.cmu.edu>
  * 
  */
@@ -35,6 +49,15 @@ public class QueryExpansionRetrievalStrategist extends
 
 	protected SolrWrapper wrapper;
 
+	protected AsyncSolrClient client;
+
+	protected int prefetchDocuments = 0;
+
+	protected RetrievalResultCache resultCache;
+
+	/* Field whose value is fetched with the hits, or null to fetch only their IDs and scores */
+	protected String textField;
+
 	private List<AbstractQueryExpander> expanderList;
 
 	@Override
@@ -68,6 +91,30 @@ public class QueryExpansionRetrievalStrategist extends
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}
+		Integer maxInFlight = (Integer) aContext
+				.getConfigParameterValue("max-in-flight");
+		if (maxInFlight != null && maxInFlight > 0) {
+			Integer maxQueued = (Integer) aContext
+					.getConfigParameterValue("max-queued");
+			Integer prefetch = (Integer) aContext
+					.getConfigParameterValue("prefetch-documents");
+			this.client = new AsyncSolrClient(wrapper, maxInFlight,
+					maxQueued == null ? hitListSize : maxQueued);
+			this.prefetchDocuments = prefetch == null ? hitListSize : prefetch;
+		}
+		if (Boolean.TRUE.equals(aContext.getConfigParameterValue("fetch-text"))) {
+			String field = (String) aContext
+					.getConfigParameterValue("text-field");
+			this.textField = field == null ? "text" : field.trim();
+		}
+		String cacheDir = (String) aContext
+				.getConfigParameterValue("retrieval-cache-dir");
+		if (cacheDir != null) {
+			this.resultCache = RetrievalResultCache.open(new File(
+					cacheDir.trim()), RetrievalResultCache.source(serverUrl,
+					serverPort, embedded, core, aContext
+							.getConfigParameterValue("retrieval-cache-generation")));
+		}
 
 		String[] expanders = (String[]) aContext
 				.getConfigParameterValue("expanders");
@@ -142,24 +189,82 @@ public class QueryExpansionRetrievalStrategist extends
 	protected List<RetrievalResult> retrieveDocuments(String query) {
 		List<RetrievalResult> result = new ArrayList<RetrievalResult>();
 		try {
-			SolrDocumentList docs = wrapper.runQuery(query, hitListSize);
-			for (SolrDocument doc : docs) {
-				RetrievalResult r = new RetrievalResult(
-						(String) doc.getFieldValue("id"),
-						(Float) doc.getFieldValue("score"), query);
+			List<RetrievalResultCache.Hit> hits = resultCache == null ? null
+					: resultCache.peek(query, hitListSize);
+			if (hits != null && !textsCached(hits)) {
+				hits = null;
+			}
+			if (resultCache != null) {
+				resultCache.count(hits != null);
+			}
+			if (hits == null) {
+				SolrDocumentList docs = runQuery(query);
+				hits = new ArrayList<RetrievalResultCache.Hit>();
+				for (SolrDocument doc : docs) {
+					hits.add(new RetrievalResultCache.Hit((String) doc
+							.getFieldValue("id"), (Float) doc
+							.getFieldValue("score")));
+				}
+				if (resultCache != null)
+					resultCache.put(query, hitListSize, hits);
+			}
+			for (RetrievalResultCache.Hit hit : hits) {
+				RetrievalResult r = new RetrievalResult(hit.id, hit.score,
+						query);
 				result.add(r);
-				System.out.println(doc.getFieldValue("id"));
+				System.out.println(hit.id);
 			}
+			prefetch(result);
 		} catch (Exception e) {
 			System.err.println("Error retrieving documents from Solr: " + e);
 		}
 		return result;
 	}
 
+	private SolrDocumentList runQuery(String query) throws Exception {
+		if (textField == null)
+			return client == null ? wrapper.runQuery(query, hitListSize)
+					: client.runQuery(query, hitListSize);
+		SolrQuery solrQuery = new SolrQuery(query);
+		solrQuery.setFields("id", "score", textField);
+		solrQuery.setRows(hitListSize);
+		SolrDocumentList docs = client == null ? wrapper.runQuery(solrQuery,
+				hitListSize) : client.runQuery(solrQuery, hitListSize);
+		DocumentTextCache.getInstance().putAll(docs, textField);
+		return docs;
+	}
+
+	/* Whether the text of the hits is cached, as the text is not fetched for a cached hit list */
+	private boolean textsCached(List<RetrievalResultCache.Hit> hits) {
+		if (textField == null)
+			return true;
+		DocumentTextCache cache = DocumentTextCache.getInstance();
+		for (RetrievalResultCache.Hit hit : hits) {
+			if (!cache.contains(hit.id))
+				return false;
+		}
+		return true;
+	}
+
+	/* Starts fetching the text of the top documents for the passage extractors */
+	protected void prefetch(List<RetrievalResult> documents)
+			throws InterruptedException {
+		if (client == null)
+			return;
+		DocumentTextCache cache = DocumentTextCache.getInstance();
+		for (int i = 0; i < documents.size() && i < prefetchDocuments; i++) {
+			cache.prefetch(client, documents.get(i).getDocID());
+		}
+	}
+
 	@Override
 	public void collectionProcessComplete()
 			throws AnalysisEngineProcessException {
 		super.collectionProcessComplete();
+		if (client != null)
+			client.shutdown();
 		wrapper.close();
+		if (resultCache != null)
+			System.out.println(resultCache);
 	}
 }
\ No newline at end of file
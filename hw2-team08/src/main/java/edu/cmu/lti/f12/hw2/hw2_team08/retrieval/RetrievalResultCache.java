@@ -0,0 +1,259 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.retrieval;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.cmu.lti.f12.hw2.hw2_team08.util.KeytermCache;
+
+/**
+ * The RetrievalResultCache class keeps the ranked hits Solr returned for each query on local disk,
+ * so that sweeping parameters such as <code>hit-list-size</code> or <code>expand-factor</code>
+ * does not send the same query to Solr again. Queries are normalized by collapsing whitespace, see
+ * {@link #normalize(String)}; they are not lowercased, as Solr's operators are case sensitive.
+ *
+ * For each query the longest hit list fetched so far is kept, and shorter requests are served
+ * with a prefix of it. A list shorter than the number of hits requested holds every match, so it
+ * serves requests of any size.
+ *
+ * There is one cache file per Solr source, and one instance per file in the JVM, see
+ * {@link #open(File, String)}. Entries never expire, and the cache cannot tell when the index
+ * behind a source is rebuilt or re-ranked, so the source includes a generation set by the user,
+ * see {@link #source(String, Integer, Boolean, String, Object)}. After changing the index, bump
+ * the generation, or delete the cache directory, or stale hits will be served.
+ */
+public class RetrievalResultCache {
+
+  /* Version of the on-disk format, part of the file names so old entries are ignored */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final Map<File, RetrievalResultCache> instances = new HashMap<File, RetrievalResultCache>();
+
+  /* A document found for a query, with its score */
+  public static class Hit {
+    public final String id;
+
+    public final float score;
+
+    public Hit(String id, float score) {
+      this.id = id;
+      this.score = score;
+    }
+  }
+
+  private static class Entry {
+    final int requested;
+
+    final List<Hit> hits;
+
+    Entry(int requested, List<Hit> hits) {
+      this.requested = requested;
+      this.hits = hits;
+    }
+
+    boolean covers(int rows) {
+      return rows <= requested || hits.size() < requested;
+    }
+  }
+
+  private final File mFile;
+
+  private final Map<String, Entry> mEntries = new HashMap<String, Entry>();
+
+  private long mHits = 0;
+
+  private long mMisses = 0;
+
+  private RetrievalResultCache(File file) {
+    mFile = file;
+  }
+
+  /**
+   * Opens the cache of the source in the directory, creating the directory if needed. The source
+   * identifies the index queried, e.g. the server URL and core, and is hashed into the file name.
+   */
+  public static synchronized RetrievalResultCache open(File directory, String source) {
+    File file = new File(directory, KeytermCache.md5(source) + ".hits.v" + FORMAT_VERSION);
+    RetrievalResultCache cache = instances.get(file.getAbsoluteFile());
+    if (cache != null) {
+      return cache;
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      System.err.println("Could not create retrieval cache directory: " + directory);
+      return new RetrievalResultCache(null);
+    }
+    cache = new RetrievalResultCache(file);
+    if (file.isFile()) {
+      try {
+        cache.read();
+      } catch (IOException e) {
+        // appending could corrupt the file, so only keep the entries read in memory
+        System.err.println("Could not read retrieval cache " + file + ": " + e);
+        RetrievalResultCache memory = new RetrievalResultCache(null);
+        memory.mEntries.putAll(cache.mEntries);
+        cache = memory;
+      }
+    }
+    if (!cache.mEntries.isEmpty()) {
+      System.err.println("Serving " + cache.mEntries.size() + " cached queries from " + file
+              + " for " + source + "; change the generation if the index has changed");
+    }
+    instances.put(file.getAbsoluteFile(), cache);
+    return cache;
+  }
+
+  /* Describes a Solr index together with the generation of its contents, for open() */
+  public static String source(String serverUrl, Integer port, Boolean embedded, String core,
+          Object generation) {
+    return serverUrl + "|" + port + "|" + embedded + "|" + core + "|generation="
+            + (generation == null ? "0" : String.valueOf(generation).trim());
+  }
+
+  public static String normalize(String query) {
+    return query.trim().replaceAll("\\s+", " ");
+  }
+
+  /* Returns the first hits of the query, or null if they are not cached, counting a hit or a miss */
+  public synchronized List<Hit> get(String query, int rows) {
+    List<Hit> hits = peek(query, rows);
+    count(hits != null);
+    return hits;
+  }
+
+  /*
+   * Like get, but without counting a hit or a miss, for callers which may still have to send the
+   * query, e.g. because the texts of the hits are not cached; they call count once they know
+   */
+  public synchronized List<Hit> peek(String query, int rows) {
+    Entry entry = mEntries.get(normalize(query));
+    if (entry == null || !entry.covers(rows)) {
+      return null;
+    }
+    return entry.hits.subList(0, Math.min(rows, entry.hits.size()));
+  }
+
+  /* Counts a lookup as a hit if it saved sending the query, and as a miss otherwise */
+  public synchronized void count(boolean hit) {
+    if (hit) {
+      mHits++;
+    } else {
+      mMisses++;
+    }
+  }
+
+  /* Stores the hits Solr returned when asked for the given number of them */
+  public synchronized void put(String query, int requested, List<Hit> hits) {
+    query = normalize(query);
+    Entry entry = mEntries.get(query);
+    if (entry != null && entry.covers(requested)) {
+      return;
+    }
+    entry = new Entry(requested, Collections.unmodifiableList(new ArrayList<Hit>(hits)));
+    mEntries.put(query, entry);
+    if (mFile != null) {
+      try {
+        append(query, entry);
+      } catch (IOException e) {
+        System.err.println("Could not write retrieval cache " + mFile + ": " + e);
+      }
+    }
+  }
+
+  /*
+   * An entry holds the query, the number of hits requested, the number returned and the hits.
+   * Later entries of a query replace earlier ones. Entries are only ever appended, so a crash can
+   * only cut the last one short. Reading stops at the first entry which is truncated or malformed,
+   * and the file is cut back to the entries before it, so that new entries follow them.
+   */
+  private void read() throws IOException {
+    byte[] data = new byte[(int) mFile.length()];
+    DataInputStream file = new DataInputStream(new FileInputStream(mFile));
+    try {
+      file.readFully(data);
+    } finally {
+      file.close();
+    }
+
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    DataInputStream in = new DataInputStream(bytes);
+    int complete = 0;
+    try {
+      while (bytes.available() > 0) {
+        String query = in.readUTF();
+        int requested = in.readInt();
+        int count = in.readInt();
+        // a hit takes at least 6 bytes, so a larger count cannot be read
+        if (count < 0 || count > bytes.available() / 6) {
+          break;
+        }
+        List<Hit> hits = new ArrayList<Hit>(count);
+        for (int i = 0; i < count; i++) {
+          hits.add(new Hit(in.readUTF(), in.readFloat()));
+        }
+        mEntries.put(query, new Entry(requested, Collections.unmodifiableList(hits)));
+        complete = data.length - bytes.available();
+      }
+    } catch (IOException e) {
+      // the entry is truncated, or its text is not valid modified UTF-8
+    } catch (RuntimeException e) {
+      // the entry is malformed in some other way
+    }
+    if (complete < data.length) {
+      System.err.println("Dropped " + (data.length - complete)
+              + " bytes of a truncated or malformed entry from retrieval cache " + mFile);
+      RandomAccessFile out = new RandomAccessFile(mFile, "rw");
+      try {
+        out.setLength(complete);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private void append(String query, Entry entry) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+            mFile, true)));
+    try {
+      out.writeUTF(query);
+      out.writeInt(entry.requested);
+      out.writeInt(entry.hits.size());
+      for (Hit hit : entry.hits) {
+        out.writeUTF(hit.id);
+        out.writeFloat(hit.score);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public synchronized long getHits() {
+    return mHits;
+  }
+
+  public synchronized long getMisses() {
+    return mMisses;
+  }
+
+  /* Fraction of lookups answered from the cache */
+  public synchronized double getHitRate() {
+    return mHits + mMisses == 0 ? 0 : (double) mHits / (mHits + mMisses);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("RetrievalResultCache: %d queries, %d hits, %d misses (%.1f%% hit rate)%s",
+            mEntries.size(), mHits, mMisses, 100 * getHitRate(), mFile == null ? "" : " ("
+                    + mFile + ")");
+  }
+}
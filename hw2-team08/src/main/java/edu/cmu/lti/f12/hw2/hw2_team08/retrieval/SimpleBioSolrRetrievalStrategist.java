@@ -16,21 +16,39 @@
 
 package edu.cmu.lti.f12.hw2.hw2_team08.retrieval;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import edu.cmu.lti.f12.hw2.hw2_team08.util.AsyncSolrClient;
+import edu.cmu.lti.f12.hw2.hw2_team08.util.DocumentTextCache;
 import edu.cmu.lti.oaqa.core.provider.solr.SolrWrapper;
 import edu.cmu.lti.oaqa.cse.basephase.retrieval.AbstractRetrievalStrategist;
 import edu.cmu.lti.oaqa.framework.data.Keyterm;
 import edu.cmu.lti.oaqa.framework.data.RetrievalResult;
 
 /**
+ * With <code>max-in-flight</code> set, queries are sent through an {@link AsyncSolrClient}, and
+ * the text of the first <code>prefetch-documents</code> hits (all of them by default) is fetched in
+ * the background into the {@link DocumentTextCache}, overlapping those requests with passage
+ * extraction.
+ * 
+ * With <code>retrieval-cache-dir</code> set, the hits of each query are kept in a
+ * {@link RetrievalResultCache} in that directory, so repeated queries are answered without Solr.
+ * The cached hits are kept until <code>retrieval-cache-generation</code> changes, which must be
+ * done whenever the index is rebuilt.
+ * 
+ * With <code>fetch-text</code> set, the query also asks for the <code>text-field</code> of the
+ * hits ("text" by default), which goes into the {@link DocumentTextCache}, so the passage
+ * extractors need no further request per document. A cached hit list is then only used if the
+ * text of all its documents is cached as well.
  * 
  * @author Zi Yang <ziy@cs.cmu.edu>
  * 
@@ -41,6 +59,15 @@ public class SimpleBioSolrRetrievalStrategist extends AbstractRetrievalStrategis
 
   protected SolrWrapper wrapper;
 
+  protected AsyncSolrClient client;
+
+  protected int prefetchDocuments = 0;
+
+  protected RetrievalResultCache resultCache;
+
+  /* Field whose value is fetched with the hits, or null to fetch only their IDs and scores */
+  protected String textField;
+
   @Override
   public void initialize(UimaContext aContext) throws ResourceInitializationException {
     super.initialize(aContext);
@@ -59,6 +86,24 @@ public class SimpleBioSolrRetrievalStrategist extends AbstractRetrievalStrategis
     } catch (Exception e) {
       throw new ResourceInitializationException(e);
     }
+    Integer maxInFlight = (Integer) aContext.getConfigParameterValue("max-in-flight");
+    if (maxInFlight != null && maxInFlight > 0) {
+      Integer maxQueued = (Integer) aContext.getConfigParameterValue("max-queued");
+      Integer prefetch = (Integer) aContext.getConfigParameterValue("prefetch-documents");
+      this.client = new AsyncSolrClient(wrapper, maxInFlight, maxQueued == null ? hitListSize
+              : maxQueued);
+      this.prefetchDocuments = prefetch == null ? hitListSize : prefetch;
+    }
+    if (Boolean.TRUE.equals(aContext.getConfigParameterValue("fetch-text"))) {
+      String field = (String) aContext.getConfigParameterValue("text-field");
+      this.textField = field == null ? "text" : field.trim();
+    }
+    String cacheDir = (String) aContext.getConfigParameterValue("retrieval-cache-dir");
+    if (cacheDir != null) {
+      this.resultCache = RetrievalResultCache.open(new File(cacheDir.trim()),
+              RetrievalResultCache.source(serverUrl, serverPort, embedded, core,
+                      aContext.getConfigParameterValue("retrieval-cache-generation")));
+    }
   }
 
   @Override
@@ -81,22 +126,85 @@ public class SimpleBioSolrRetrievalStrategist extends AbstractRetrievalStrategis
   protected List<RetrievalResult> retrieveDocuments(String query) {
     List<RetrievalResult> result = new ArrayList<RetrievalResult>();
     try {
-      SolrDocumentList docs = wrapper.runQuery(query, hitListSize);
-      for (SolrDocument doc : docs) {
-        RetrievalResult r = new RetrievalResult((String) doc.getFieldValue("id"),
-                (Float) doc.getFieldValue("score"), query);
+      List<RetrievalResultCache.Hit> hits = resultCache == null ? null : resultCache.peek(query,
+              hitListSize);
+      if (hits != null && !textsCached(hits)) {
+        hits = null;
+      }
+      if (resultCache != null) {
+        resultCache.count(hits != null);
+      }
+      if (hits == null) {
+        SolrDocumentList docs = runQuery(query);
+        hits = new ArrayList<RetrievalResultCache.Hit>();
+        for (SolrDocument doc : docs) {
+          hits.add(new RetrievalResultCache.Hit((String) doc.getFieldValue("id"), (Float) doc
+                  .getFieldValue("score")));
+        }
+        if (resultCache != null) {
+          resultCache.put(query, hitListSize, hits);
+        }
+      }
+      for (RetrievalResultCache.Hit hit : hits) {
+        RetrievalResult r = new RetrievalResult(hit.id, hit.score, query);
         result.add(r);
-        System.out.println(doc.getFieldValue("id"));
+        System.out.println(hit.id);
       }
+      prefetch(result);
     } catch (Exception e) {
       System.err.println("Error retrieving documents from Solr: " + e);
     }
     return result;
   }
 
+  private SolrDocumentList runQuery(String query) throws Exception {
+    if (textField == null) {
+      return client == null ? wrapper.runQuery(query, hitListSize) : client.runQuery(query,
+              hitListSize);
+    }
+    SolrQuery solrQuery = new SolrQuery(query);
+    solrQuery.setFields("id", "score", textField);
+    solrQuery.setRows(hitListSize);
+    SolrDocumentList docs = client == null ? wrapper.runQuery(solrQuery, hitListSize) : client
+            .runQuery(solrQuery, hitListSize);
+    DocumentTextCache.getInstance().putAll(docs, textField);
+    return docs;
+  }
+
+  /* Whether the text of the hits is cached, as the text is not fetched for a cached hit list */
+  private boolean textsCached(List<RetrievalResultCache.Hit> hits) {
+    if (textField == null) {
+      return true;
+    }
+    DocumentTextCache cache = DocumentTextCache.getInstance();
+    for (RetrievalResultCache.Hit hit : hits) {
+      if (!cache.contains(hit.id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Starts fetching the text of the top documents for the passage extractors */
+  protected void prefetch(List<RetrievalResult> documents) throws InterruptedException {
+    if (client == null) {
+      return;
+    }
+    DocumentTextCache cache = DocumentTextCache.getInstance();
+    for (int i = 0; i < documents.size() && i < prefetchDocuments; i++) {
+      cache.prefetch(client, documents.get(i).getDocID());
+    }
+  }
+
   @Override
   public void collectionProcessComplete() throws AnalysisEngineProcessException {
     super.collectionProcessComplete();
+    if (client != null) {
+      client.shutdown();
+    }
     wrapper.close();
+    if (resultCache != null) {
+      System.out.println(resultCache);
+    }
   }
 }
\ No newline at end of file
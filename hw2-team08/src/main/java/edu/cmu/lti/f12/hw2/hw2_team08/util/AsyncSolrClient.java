@@ -0,0 +1,180 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocumentList;
+
+import edu.cmu.lti.oaqa.core.provider.solr.SolrWrapper;
+
+/**
+ * The AsyncSolrClient class sends requests through a SolrWrapper from a pool of worker threads and
+ * returns futures, so that a caller can keep working, e.g. extracting passages, while Solr answers.
+ * The wrapper's underlying server is shared by the workers, which the SolrJ servers allow.
+ *
+ * At most <code>maxInFlight</code> requests are sent to Solr at once, and at most
+ * <code>maxQueued</code> more wait for a worker; submitting another blocks until one of them
+ * completes, so a caller cannot flood a remote server or pile up requests without bound.
+ */
+public class AsyncSolrClient {
+
+  /* Told of the outcome of a request, on the worker thread which sent it */
+  public interface Callback<T> {
+    public void done(T result);
+
+    public void failed(Exception e);
+  }
+
+  private final SolrWrapper wrapper;
+
+  private final Semaphore submitted;
+
+  private final ExecutorService executor;
+
+  public AsyncSolrClient(SolrWrapper wrapper, int maxInFlight, int maxQueued) {
+    if (maxInFlight < 1 || maxQueued < 0) {
+      throw new IllegalArgumentException("Need maxInFlight >= 1 and maxQueued >= 0, got "
+              + maxInFlight + " and " + maxQueued);
+    }
+    this.wrapper = wrapper;
+    this.submitted = new Semaphore(maxInFlight + maxQueued);
+    this.executor = Executors.newFixedThreadPool(maxInFlight, new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "solr-worker-" + (++count));
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  public SolrWrapper getWrapper() {
+    return wrapper;
+  }
+
+  public Future<SolrDocumentList> submitQuery(String query, int rows) throws InterruptedException {
+    return submitQuery(query, rows, null);
+  }
+
+  public Future<SolrDocumentList> submitQuery(final String query, final int rows,
+          Callback<SolrDocumentList> callback) throws InterruptedException {
+    return submit(new Callable<SolrDocumentList>() {
+      public SolrDocumentList call() throws SolrServerException {
+        return wrapper.runQuery(query, rows);
+      }
+    }, callback);
+  }
+
+  /* Sends a query built by the caller, e.g. one asking for more fields than the ID and score */
+  public Future<SolrDocumentList> submitQuery(final SolrQuery query, final int rows)
+          throws InterruptedException {
+    return submit(new Callable<SolrDocumentList>() {
+      public SolrDocumentList call() throws SolrServerException {
+        return wrapper.runQuery(query, rows);
+      }
+    }, null);
+  }
+
+  public Future<String> submitDocText(String id) throws InterruptedException {
+    return submitDocText(id, null);
+  }
+
+  public Future<String> submitDocText(final String id, Callback<String> callback)
+          throws InterruptedException {
+    return submit(new Callable<String>() {
+      public String call() throws SolrServerException {
+        return wrapper.getDocText(id);
+      }
+    }, callback);
+  }
+
+  /* Runs the query on a worker and waits for its results */
+  public SolrDocumentList runQuery(String query, int rows) throws SolrServerException,
+          InterruptedException {
+    return get(submitQuery(query, rows));
+  }
+
+  public SolrDocumentList runQuery(SolrQuery query, int rows) throws SolrServerException,
+          InterruptedException {
+    return get(submitQuery(query, rows));
+  }
+
+  /* Waits for a request of this client, rethrowing the SolrServerException it failed with */
+  public static <T> T get(Future<T> future) throws SolrServerException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SolrServerException) {
+        throw (SolrServerException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SolrServerException(e.getCause());
+    }
+  }
+
+  private <T> Future<T> submit(final Callable<T> request, final Callback<T> callback)
+          throws InterruptedException {
+    submitted.acquire();
+    try {
+      return executor.submit(new Callable<T>() {
+        public T call() throws Exception {
+          T result;
+          try {
+            result = request.call();
+          } catch (Exception e) {
+            if (callback != null) {
+              callback.failed(e);
+            }
+            throw e;
+          } finally {
+            submitted.release();
+          }
+          if (callback != null) {
+            callback.done(result);
+          }
+          return result;
+        }
+      });
+    } catch (RuntimeException e) {
+      submitted.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Runs a task built by the caller on a worker, counting it against the same limits as the
+   * requests, e.g. a FutureTask the caller has published before it starts.
+   */
+  public void execute(final Runnable task) throws InterruptedException {
+    submitted.acquire();
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            task.run();
+          } finally {
+            submitted.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      submitted.release();
+      throw e;
+    }
+  }
+
+  /* Stops the workers once the requests sent so far are done; the wrapper is left open */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,164 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The ChunkerModelRegistry class loads each serialized LingPipe model once per JVM, however many
+ * extractors ask for it, so enabling several extractors over the same HMM chunker keeps a single
+ * copy of the model in heap. Models are keyed by the canonical path of their file together with
+ * its modification time and length, so a model file replaced on disk is loaded again and the old
+ * copy dropped.
+ *
+ * Models are read through a memory-mapped view of the file rather than a stream of small reads.
+ * The same instance is returned to every caller; compiled LingPipe chunkers are not modified when
+ * chunking, so they can be shared between extractors and threads.
+ */
+public class ChunkerModelRegistry {
+
+  private static ChunkerModelRegistry instance = null;
+
+  private final ConcurrentHashMap<String, FutureTask<Object>> mModels =
+          new ConcurrentHashMap<String, FutureTask<Object>>();
+
+  private long mLoads = 0;
+
+  private long mRequests = 0;
+
+  /* Singleton shared by all keyterm extractors in the JVM */
+  public static synchronized ChunkerModelRegistry getInstance() {
+    if (instance == null) {
+      instance = new ChunkerModelRegistry();
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the model deserialized from the file, loading it only if it has not been loaded
+   * before, or has changed since. Concurrent requests for a model being loaded wait for it instead
+   * of loading it again.
+   */
+  public Object getModel(File file) throws IOException, ClassNotFoundException {
+    final File canonical = file.getCanonicalFile();
+    String path = canonical.getPath();
+    String key = path + "@" + canonical.lastModified() + ":" + canonical.length();
+    FutureTask<Object> task;
+    boolean owner = false;
+    synchronized (this) {
+      mRequests++;
+      task = mModels.get(key);
+      if (task == null) {
+        // drop the copies of earlier versions of the file
+        for (Iterator<String> it = mModels.keySet().iterator(); it.hasNext();) {
+          if (it.next().startsWith(path + "@")) {
+            it.remove();
+          }
+        }
+        task = new FutureTask<Object>(new Callable<Object>() {
+          public Object call() throws Exception {
+            return readMapped(canonical);
+          }
+        });
+        mModels.put(key, task);
+        mLoads++;
+        owner = true;
+      }
+    }
+    if (owner) {
+      task.run();
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + canonical);
+    } catch (ExecutionException e) {
+      // let a later request try again
+      mModels.remove(key, task);
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause.toString());
+    }
+  }
+
+  /* Deserializes the object in the file from a read-only mapping of it */
+  private static Object readMapped(File file) throws IOException, ClassNotFoundException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    MappedByteBuffer buffer;
+    try {
+      FileChannel channel = raf.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      // the mapping stays valid after the channel is closed
+      raf.close();
+    }
+    ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(buffer));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ChunkerModelRegistry: " + mRequests + " requests, " + mLoads + " models loaded";
+  }
+}
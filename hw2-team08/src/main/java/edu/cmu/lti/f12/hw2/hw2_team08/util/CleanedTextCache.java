@@ -0,0 +1,249 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The CleanedTextCache class memoizes the conversion of a document's HTML into the plain text
+ * that passage extractors search. Cleaned texts are kept in memory, and, when a directory is set,
+ * persisted to disk so that later runs over the same collection skip HTML parsing entirely.
+ *
+ * Entries are keyed by the document ID together with an MD5 hash of the HTML, so a document whose
+ * content changes in the index is cleaned again instead of being served stale. Each entry holds
+ * the offset map back to the HTML and the sentence boundaries along with the text, see
+ * {@link NormalizedText}.
+ */
+public class CleanedTextCache {
+
+  /* Version of the on-disk format, part of the file names so old entries are ignored */
+  private static final int FORMAT_VERSION = 3;
+
+  private static CleanedTextCache instance = null;
+
+  private static final ThreadLocal<HtmlTextNormalizer> NORMALIZER =
+          new ThreadLocal<HtmlTextNormalizer>() {
+    @Override
+    protected HtmlTextNormalizer initialValue() {
+      return new HtmlTextNormalizer();
+    }
+  };
+
+  private final LinkedHashMap<String, NormalizedText> mMemory;
+
+  private long mMaxWeight;
+
+  private long mWeight = 0;
+
+  private File mDirectory = null;
+
+  private long mMemoryHits = 0;
+
+  private long mDiskHits = 0;
+
+  private long mCleaned = 0;
+
+  public CleanedTextCache(long maxWeight) {
+    mMemory = new LinkedHashMap<String, NormalizedText>(16, 0.75f, true);
+    mMaxWeight = maxWeight;
+  }
+
+  /* Singleton shared by all passage extractors in the JVM */
+  public static synchronized CleanedTextCache getInstance() {
+    if (instance == null) {
+      instance = new CleanedTextCache(DocumentTextCache.DEFAULT_MAX_WEIGHT);
+    }
+    return instance;
+  }
+
+  /* Sets the directory cleaned texts are persisted to, creating it if needed; null disables it */
+  public synchronized void setDirectory(File directory) {
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      System.err.println("Could not create cleaned text cache directory: " + directory);
+      directory = null;
+    }
+    mDirectory = directory;
+  }
+
+  /* Sets the bound on the total size of the entries kept in memory, in chars, see weight() */
+  public synchronized void setMaxWeight(long maxWeight) {
+    mMaxWeight = maxWeight;
+    evict();
+  }
+
+  /* Returns the cleaned text of the document, cleaning its HTML only if it is not cached */
+  public String getCleanedText(String id, String htmlText) {
+    return getNormalizedText(id, htmlText).getText();
+  }
+
+  /* Returns the cleaned text of the document and its offset map back to the HTML */
+  public NormalizedText getNormalizedText(String id, String htmlText) {
+    String key = id + "." + md5(htmlText);
+    NormalizedText text;
+    synchronized (this) {
+      text = mMemory.get(key);
+      if (text != null) {
+        mMemoryHits++;
+        return text;
+      }
+    }
+    File file = getFile(key);
+    if (file != null && file.isFile()) {
+      try {
+        text = read(file);
+        synchronized (this) {
+          mDiskHits++;
+        }
+      } catch (IOException e) {
+        System.err.println("Could not read cleaned text from " + file + ": " + e);
+      } catch (RuntimeException e) {
+        // a corrupt entry, e.g. with offsets which do not match the text; clean the HTML again
+        System.err.println("Ignored corrupt cleaned text in " + file + ": " + e);
+      }
+    }
+    if (text == null) {
+      text = NORMALIZER.get().normalize(htmlText);
+      synchronized (this) {
+        mCleaned++;
+      }
+      if (file != null) {
+        try {
+          write(file, text);
+        } catch (IOException e) {
+          System.err.println("Could not write cleaned text to " + file + ": " + e);
+        }
+      }
+    }
+    put(key, text);
+    return text;
+  }
+
+  /* Strips the HTML markup and control characters from the text */
+  public static String clean(String htmlText) {
+    return NORMALIZER.get().normalize(htmlText).getText();
+  }
+
+  private synchronized void put(String key, NormalizedText text) {
+    if (weight(text) > mMaxWeight) {
+      return;
+    }
+    NormalizedText previous = mMemory.put(key, text);
+    if (previous != null) {
+      mWeight -= weight(previous);
+    }
+    mWeight += weight(text);
+    evict();
+  }
+
+  /*
+   * Size of the entry in chars: the text, and two chars for each of its int offsets and
+   * boundaries, which take up most of the memory of an entry
+   */
+  private static long weight(NormalizedText text) {
+    return text.length() + 2L * (text.length() + 1) + 2L * text.getBoundaries().length;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, NormalizedText>> it = mMemory.entrySet().iterator();
+    while (mWeight > mMaxWeight && it.hasNext()) {
+      mWeight -= weight(it.next().getValue());
+      it.remove();
+    }
+  }
+
+  private synchronized File getFile(String key) {
+    if (mDirectory == null) {
+      return null;
+    }
+    return new File(mDirectory, key.replaceAll("[^A-Za-z0-9._-]", "_") + ".v" + FORMAT_VERSION);
+  }
+
+  /*
+   * An entry holds the text length, the text, one offset per character plus one, and the number
+   * of boundaries followed by the boundaries. The counts are checked against the size of the file,
+   * so a corrupt entry is rejected before anything is allocated for it.
+   */
+  private static NormalizedText read(File file) throws IOException {
+    long size = file.length();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      int length = in.readInt();
+      if (length < 0 || 12 + 6L * length > size) {
+        throw new IOException("Corrupt entry: text length " + length + " in " + size + " bytes");
+      }
+      char[] text = new char[length];
+      for (int i = 0; i < length; i++) {
+        text[i] = in.readChar();
+      }
+      int[] offsets = new int[length + 1];
+      for (int i = 0; i <= length; i++) {
+        offsets[i] = in.readInt();
+      }
+      int count = in.readInt();
+      if (count < 0 || 12 + 6L * length + 4L * count != size) {
+        throw new IOException("Corrupt entry: " + count + " boundaries in " + size + " bytes");
+      }
+      int[] boundaries = new int[count];
+      for (int i = 0; i < boundaries.length; i++) {
+        boundaries[i] = in.readInt();
+      }
+      return new NormalizedText(new String(text), offsets, boundaries);
+    } finally {
+      in.close();
+    }
+  }
+
+  /* Writes to a temporary file first, so concurrent readers never see a partial entry */
+  private static void write(File file, NormalizedText text) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(text.length());
+      out.writeChars(text.getText());
+      for (int offset : text.getRawOffsets()) {
+        out.writeInt(offset);
+      }
+      out.writeInt(text.getBoundaries().length);
+      for (int boundary : text.getBoundaries()) {
+        out.writeInt(boundary);
+      }
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+    }
+  }
+
+  private static String md5(String text) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CleanedTextCache: " + mMemoryHits + " memory hits, " + mDiskHits + " disk hits, "
+            + mCleaned + " documents cleaned";
+  }
+}
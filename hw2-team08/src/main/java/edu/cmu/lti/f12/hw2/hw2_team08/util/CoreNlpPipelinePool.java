@@ -0,0 +1,224 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * The CoreNlpPipelinePool class shares StanfordCoreNLP pipelines between all keyterm extractors in
+ * the JVM, so that the models of a given annotator configuration are loaded once instead of once
+ * per extractor. Pipelines are keyed by their properties, with the spaces in the annotator list
+ * ignored, and are only built when first borrowed.
+ *
+ * A pipeline is not safe to use from several threads at once, so it is lent to one thread at a
+ * time. More pipelines are built for a configuration when all of its pipelines are in use, up to
+ * {@link #getMaxPipelines()} of them; beyond that, borrowers wait for one to be returned.
+ */
+public class CoreNlpPipelinePool {
+
+  /* Annotators used by the part-of-speech based keyterm extractors */
+  public static final String POS_ANNOTATORS = "tokenize, ssplit, pos";
+
+  /*
+   * Separates the texts of a batch. The period ends a text's last sentence, so that no sentence
+   * runs from one text into the next; it lies outside all texts, so its token is dropped.
+   */
+  private static final String BATCH_SEPARATOR = "\n.\n\n";
+
+  private static CoreNlpPipelinePool instance = null;
+
+  private final Map<String, Entry> mEntries = new HashMap<String, Entry>();
+
+  private int mMaxPipelines;
+
+  public CoreNlpPipelinePool(int maxPipelines) {
+    setMaxPipelines(maxPipelines);
+  }
+
+  /* Singleton shared by all keyterm extractors in the JVM */
+  public static synchronized CoreNlpPipelinePool getInstance() {
+    if (instance == null) {
+      instance = new CoreNlpPipelinePool(Runtime.getRuntime().availableProcessors());
+    }
+    return instance;
+  }
+
+  /* Annotates the text with a pipeline running the given annotators */
+  public Annotation annotate(String annotators, String text) throws InterruptedException {
+    return annotate(annotatorProperties(annotators), text);
+  }
+
+  public Annotation annotate(Properties props, String text) throws InterruptedException {
+    Annotation document = new Annotation(text);
+    StanfordCoreNLP pipeline = borrow(props);
+    try {
+      pipeline.annotate(document);
+    } finally {
+      release(props, pipeline);
+    }
+    return document;
+  }
+
+  /* The tokens of each sentence of the annotated text */
+  public List<List<CoreLabel>> annotateSentences(Properties props, String text)
+          throws InterruptedException {
+    List<String> texts = new ArrayList<String>(1);
+    texts.add(text);
+    return annotateBatch(props, texts).get(0);
+  }
+
+  /**
+   * Annotates several texts in one call of the pipeline, e.g. the questions of a dataset, which
+   * saves the per-call overhead of short texts. The texts are joined into one document, and the
+   * tokens are split up again by offset, so each text gets the tokens of its own sentences, with
+   * offsets into the text itself. Part-of-speech tags may differ from annotating each text alone
+   * where the tagger looks across the end of a text.
+   */
+  public List<List<List<CoreLabel>>> annotateBatch(Properties props, List<String> texts)
+          throws InterruptedException {
+    int[] starts = new int[texts.size()];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < texts.size(); i++) {
+      if (i > 0) {
+        sb.append(BATCH_SEPARATOR);
+      }
+      starts[i] = sb.length();
+      sb.append(texts.get(i));
+    }
+    Annotation document = annotate(props, sb.toString());
+
+    List<List<List<CoreLabel>>> result = new ArrayList<List<List<CoreLabel>>>(texts.size());
+    for (int i = 0; i < texts.size(); i++) {
+      result.add(new ArrayList<List<CoreLabel>>());
+    }
+    for (CoreMap sentence : document.get(SentencesAnnotation.class)) {
+      int current = -1;
+      List<CoreLabel> tokens = null;
+      for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
+        int text = textAt(starts, texts, token.beginPosition());
+        if (text < 0) {
+          continue;
+        }
+        if (text != current) {
+          current = text;
+          tokens = new ArrayList<CoreLabel>();
+          result.get(text).add(tokens);
+        }
+        token.setBeginPosition(token.beginPosition() - starts[text]);
+        token.setEndPosition(token.endPosition() - starts[text]);
+        tokens.add(token);
+      }
+    }
+    return result;
+  }
+
+  // Index of the text containing the offset, or -1 if it lies in a separator.
+  private static int textAt(int[] starts, List<String> texts, int offset) {
+    int lo = 0, hi = starts.length - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (starts[mid] <= offset) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return offset >= starts[lo] && offset < starts[lo] + texts.get(lo).length() ? lo : -1;
+  }
+
+  /**
+   * Lends a pipeline for the configuration, building it if none is free and the configuration has
+   * fewer than the maximum number of pipelines, and waiting for one to be returned otherwise. The
+   * pipeline must be given back with {@link #release(Properties, StanfordCoreNLP)}.
+   */
+  public StanfordCoreNLP borrow(Properties props) throws InterruptedException {
+    Entry entry = entry(key(props));
+    synchronized (entry) {
+      while (entry.idle.isEmpty() && entry.created >= mMaxPipelines) {
+        entry.wait();
+      }
+      if (!entry.idle.isEmpty()) {
+        return entry.idle.remove(entry.idle.size() - 1);
+      }
+      entry.created++;
+    }
+    // build outside the lock, so that borrowers of a free pipeline do not wait for the models
+    try {
+      return new StanfordCoreNLP(props);
+    } catch (RuntimeException e) {
+      synchronized (entry) {
+        entry.created--;
+        entry.notify();
+      }
+      throw e;
+    }
+  }
+
+  public void release(Properties props, StanfordCoreNLP pipeline) {
+    Entry entry = entry(key(props));
+    synchronized (entry) {
+      entry.idle.add(pipeline);
+      entry.notify();
+    }
+  }
+
+  public synchronized int getMaxPipelines() {
+    return mMaxPipelines;
+  }
+
+  /* Maximum number of pipelines per configuration; pipelines built already are kept */
+  public synchronized void setMaxPipelines(int maxPipelines) {
+    if (maxPipelines < 1) {
+      throw new IllegalArgumentException("maxPipelines must be at least 1, got " + maxPipelines);
+    }
+    mMaxPipelines = maxPipelines;
+  }
+
+  /* Number of pipelines built so far for the configuration */
+  public int getPipelineCount(Properties props) {
+    Entry entry = entry(key(props));
+    synchronized (entry) {
+      return entry.created;
+    }
+  }
+
+  public static Properties annotatorProperties(String annotators) {
+    Properties props = new Properties();
+    props.put("annotators", annotators);
+    return props;
+  }
+
+  private synchronized Entry entry(String key) {
+    Entry entry = mEntries.get(key);
+    if (entry == null) {
+      entry = new Entry();
+      mEntries.put(key, entry);
+    }
+    return entry;
+  }
+
+  private static String key(Properties props) {
+    Map<String, String> sorted = new TreeMap<String, String>();
+    for (String name : props.stringPropertyNames()) {
+      String value = props.getProperty(name);
+      sorted.put(name, "annotators".equals(name) ? value.replaceAll("\\s+", "") : value);
+    }
+    return sorted.toString();
+  }
+
+  private static class Entry {
+    final List<StanfordCoreNLP> idle = new ArrayList<StanfordCoreNLP>();
+
+    int created = 0;
+  }
+}
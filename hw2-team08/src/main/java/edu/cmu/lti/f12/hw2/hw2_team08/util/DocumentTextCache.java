@@ -0,0 +1,238 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+import edu.cmu.lti.oaqa.core.provider.solr.SolrWrapper;
+
+/**
+ * The DocumentTextCache class keeps the text of recently fetched documents so that a document is
+ * fetched from Solr once, no matter how many passage extractors or questions ask for it. The cache
+ * is bounded by the total number of characters it holds and evicts the least recently used
+ * documents first.
+ *
+ * Documents are keyed by their ID alone, so all users of the shared instance are expected to read
+ * from the same Solr core.
+ *
+ * A retrieval strategist can {@link #prefetch(AsyncSolrClient, String) prefetch} the documents it
+ * found, so their text is fetched while the passage extractors are still busy with earlier ones.
+ * Each fetch, by a prefetch or a reader, is published before it is sent, so a document is only
+ * requested once at a time: anyone else asking for it waits for the request already made. A
+ * strategist can also ask Solr for the text along with the hits, and
+ * {@link #putAll(SolrDocumentList, String) store} it here, which saves a request per document;
+ * the cache should then hold a whole hit list's worth of text, or the first documents may be
+ * evicted before the passage extractors get to them.
+ */
+public class DocumentTextCache {
+
+  /* Default bound on the total length of the cached documents, in characters */
+  public static final long DEFAULT_MAX_WEIGHT = 32L * 1024 * 1024;
+
+  private static DocumentTextCache instance = null;
+
+  private final LinkedHashMap<String, String> mTexts;
+
+  private long mMaxWeight;
+
+  private long mWeight = 0;
+
+  private long mHits = 0;
+
+  private long mMisses = 0;
+
+  private long mEvictions = 0;
+
+  private long mPrefetches = 0;
+
+  /* Prefetch requests sent and not yet done, by document ID */
+  private final Map<String, Future<String>> mPending = new HashMap<String, Future<String>>();
+
+  public DocumentTextCache(long maxWeight) {
+    mTexts = new LinkedHashMap<String, String>(16, 0.75f, true);
+    mMaxWeight = maxWeight;
+  }
+
+  /* Singleton shared by all passage extractors in the JVM */
+  public static synchronized DocumentTextCache getInstance() {
+    if (instance == null) {
+      instance = new DocumentTextCache(DEFAULT_MAX_WEIGHT);
+    }
+    return instance;
+  }
+
+  /* Returns the text of the document, fetching it from Solr only if it is not cached */
+  public String getDocText(SolrWrapper wrapper, String id) throws SolrServerException {
+    String text = get(id);
+    if (text != null) {
+      return text;
+    }
+    Future<String> pending;
+    FutureTask<String> own = null;
+    synchronized (this) {
+      pending = mPending.get(id);
+      if (pending == null) {
+        text = mTexts.get(id);
+        if (text != null) {
+          return text;
+        }
+        // publish the fetch, so that a prefetch of the document in the meantime waits for it
+        own = fetchTask(wrapper, id);
+        mPending.put(id, own);
+        pending = own;
+      }
+    }
+    if (own != null) {
+      own.run();
+    }
+    try {
+      return AsyncSolrClient.get(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrServerException("Interrupted while fetching " + id, e);
+    } catch (SolrServerException e) {
+      if (own != null) {
+        throw e;
+      }
+      // the prefetch failed; fetch it again below
+    } catch (CancellationException e) {
+      // the prefetch was never sent; fetch it below
+    }
+    text = wrapper.getDocText(id);
+    put(id, text);
+    return text;
+  }
+
+  /**
+   * Fetches the text of the document in the background unless it is cached or being fetched
+   * already. Blocks while the client has its maximum number of requests in flight and queued.
+   */
+  public void prefetch(AsyncSolrClient client, String id) throws InterruptedException {
+    FutureTask<String> task = fetchTask(client.getWrapper(), id);
+    // publish the task before it is sent, so that readers from now on wait for it
+    synchronized (this) {
+      if (mTexts.containsKey(id) || mPending.containsKey(id)) {
+        return;
+      }
+      mPending.put(id, task);
+      mPrefetches++;
+    }
+    boolean sent = false;
+    try {
+      client.execute(task);
+      sent = true;
+    } finally {
+      if (!sent) {
+        synchronized (this) {
+          mPending.remove(id);
+        }
+        task.cancel(false);
+      }
+    }
+  }
+
+  /* Fetches the text into the cache, and then stops publishing the task as pending */
+  private FutureTask<String> fetchTask(final SolrWrapper wrapper, final String id) {
+    return new FutureTask<String>(new Callable<String>() {
+      public String call() throws SolrServerException {
+        try {
+          String text = wrapper.getDocText(id);
+          put(id, text);
+          return text;
+        } finally {
+          synchronized (DocumentTextCache.this) {
+            mPending.remove(id);
+          }
+        }
+      }
+    });
+  }
+
+  /* Returns the cached text of the document, or null, counting a hit or a miss */
+  public synchronized String get(String id) {
+    String text = mTexts.get(id);
+    if (text == null) {
+      mMisses++;
+    } else {
+      mHits++;
+    }
+    return text;
+  }
+
+  public synchronized void put(String id, String text) {
+    if (text == null || text.length() > mMaxWeight) {
+      return;
+    }
+    String previous = mTexts.put(id, text);
+    if (previous != null) {
+      mWeight -= previous.length();
+    }
+    mWeight += text.length();
+    evict();
+  }
+
+  /* Stores the text field of each document returned with a query, skipping those without one */
+  public synchronized void putAll(SolrDocumentList docs, String textField) {
+    for (SolrDocument doc : docs) {
+      Object text = doc.getFirstValue(textField);
+      if (text != null) {
+        put((String) doc.getFieldValue("id"), text.toString());
+      }
+    }
+  }
+
+  /* Whether the text of the document is cached, without counting a hit or a miss */
+  public synchronized boolean contains(String id) {
+    return mTexts.containsKey(id);
+  }
+
+  public synchronized void setMaxWeight(long maxWeight) {
+    mMaxWeight = maxWeight;
+    evict();
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, String>> it = mTexts.entrySet().iterator();
+    while (mWeight > mMaxWeight && it.hasNext()) {
+      mWeight -= it.next().getValue().length();
+      it.remove();
+      mEvictions++;
+    }
+  }
+
+  public synchronized long getHits() {
+    return mHits;
+  }
+
+  public synchronized long getMisses() {
+    return mMisses;
+  }
+
+  public synchronized long getEvictions() {
+    return mEvictions;
+  }
+
+  public synchronized long getPrefetches() {
+    return mPrefetches;
+  }
+
+  public synchronized long getWeight() {
+    return mWeight;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "DocumentTextCache: " + mTexts.size() + " documents, " + mWeight + " chars, " + mHits
+            + " hits, " + mMisses + " misses, " + mEvictions + " evictions, " + mPrefetches
+            + " prefetches";
+  }
+}
@@ -0,0 +1,282 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The HtmlTextNormalizer class extracts plain text from HTML in a single pass, without building a
+ * DOM. It replaces
+ * <code>Jsoup.parse(html).text().replaceAll("([\177-\377\0-\32]*)", "")</code>, and follows
+ * the same rules: markup, comments and script or style content are dropped, character references
+ * are decoded, whitespace runs are collapsed to one space, a space is put in front of the elements
+ * Jsoup treats as blocks, and characters in the ranges <code>\0-\32</code> and
+ * <code>\177-\377</code> are removed. The output only differs where Jsoup's parser restructures
+ * the markup, e.g. around text placed directly in the body.
+ *
+ * Every character written is mapped back to the offset in the HTML it came from, see
+ * {@link NormalizedText}. The normalizer also records where paragraphs and sentences begin: at the
+ * text following a block element's start tag, and at an upper case letter or digit following
+ * whitespace after a '.', '!' or '?'. An instance reuses its buffers between documents, so it must not be
+ * shared between threads.
+ */
+public class HtmlTextNormalizer {
+
+  private static final Set<String> BLOCK_TAGS = new HashSet<String>();
+
+  private static final Map<String, Integer> ENTITIES = new HashMap<String, Integer>();
+
+  private static final String ENTITIES_RESOURCE = "data/html-entities.txt";
+
+  static {
+    // The elements which Jsoup puts a space in front of.
+    for (String tag : new String[] { "address", "blockquote", "body", "caption", "col",
+        "colgroup", "dd", "del", "div", "dl", "dt", "fieldset", "form", "frame", "frameset", "h1",
+        "h2", "h3", "h4", "h5", "h6", "head", "hr", "html", "ins", "li", "link", "menu", "meta",
+        "noframes", "noscript", "ol", "p", "pre", "script", "style", "table", "tbody", "td",
+        "tfoot", "th", "thead", "title", "tr", "ul" })
+      BLOCK_TAGS.add(tag);
+    try {
+      loadEntities();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not load " + ENTITIES_RESOURCE, e);
+    }
+  }
+
+  /* Loads the entity dict, which has format "<name>\t<code point>" */
+  private static void loadEntities() throws IOException {
+    InputStream in = HtmlTextNormalizer.class.getClassLoader().getResourceAsStream(
+            ENTITIES_RESOURCE);
+    if (in == null) {
+      throw new IOException("resource not found");
+    }
+    BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    try {
+      String line;
+      while ((line = br.readLine()) != null) {
+        if (line.startsWith("#") || line.trim().length() == 0)
+          continue;
+        String[] splitTmp = line.split("\t");
+        ENTITIES.put(splitTmp[0], Integer.valueOf(splitTmp[1].trim()));
+      }
+    } finally {
+      br.close();
+    }
+  }
+
+  private char[] mText = new char[4096];
+
+  private int[] mOffsets = new int[4097];
+
+  private int mLength;
+
+  // Whether no text has been seen yet, and whether the last text seen was whitespace, before
+  // control characters are removed.
+  private boolean mAtStart;
+
+  private boolean mLastWasSpace;
+
+  private boolean mPendingSpace;
+
+  private int mPendingSpaceOffset;
+
+  private int[] mBoundaries = new int[256];
+
+  private int mBoundaryCount;
+
+  private boolean mPendingBoundary;
+
+  private char mLastChar;
+
+  public NormalizedText normalize(String html) {
+    mLength = 0;
+    mAtStart = true;
+    mLastWasSpace = false;
+    mPendingSpace = false;
+    mBoundaryCount = 0;
+    mPendingBoundary = false;
+    mLastChar = 0;
+    addBoundary(0);
+    int n = html.length();
+    int i = 0;
+    while (i < n) {
+      char c = html.charAt(i);
+      if (c == '<' && i + 1 < n && isTagStart(html.charAt(i + 1))) {
+        i = skipMarkup(html, i);
+      } else if (c == '&') {
+        i = decodeReference(html, i);
+      } else {
+        append(c, i);
+        i++;
+      }
+    }
+    int[] offsets = new int[mLength + 1];
+    System.arraycopy(mOffsets, 0, offsets, 0, mLength);
+    offsets[mLength] = n;
+    addBoundary(mLength);
+    int[] boundaries = new int[mBoundaryCount];
+    System.arraycopy(mBoundaries, 0, boundaries, 0, mBoundaryCount);
+    return new NormalizedText(new String(mText, 0, mLength), offsets, boundaries);
+  }
+
+  private static boolean isTagStart(char c) {
+    return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+  }
+
+  /* Skips a tag, comment or declaration starting at i, and returns the offset following it */
+  private int skipMarkup(String html, int i) {
+    int n = html.length();
+    if (html.startsWith("<!--", i)) {
+      int end = html.indexOf("-->", i + 4);
+      return end < 0 ? n : end + 3;
+    }
+    int nameStart = html.charAt(i + 1) == '/' ? i + 2 : i + 1;
+    int nameEnd = nameStart;
+    while (nameEnd < n && Character.isLetterOrDigit(html.charAt(nameEnd)))
+      nameEnd++;
+    String name = html.substring(nameStart, nameEnd).toLowerCase();
+    int end = nameEnd;
+    char quote = 0;
+    while (end < n && (quote != 0 || html.charAt(end) != '>')) {
+      char c = html.charAt(end);
+      if (quote != 0) {
+        if (c == quote)
+          quote = 0;
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      }
+      end++;
+    }
+    end = Math.min(end + 1, n);
+    boolean opening = nameStart == i + 1 && html.charAt(i + 1) != '!' && html.charAt(i + 1) != '?';
+    if (opening && BLOCK_TAGS.contains(name)) {
+      space(i);
+      mPendingBoundary = true;
+    }
+    if (opening && (name.equals("script") || name.equals("style")) && html.charAt(end - 2) != '/') {
+      int close = indexOfIgnoreCase(html, "</" + name, end);
+      return close < 0 ? n : skipMarkup(html, close);
+    }
+    return end;
+  }
+
+  /* Decodes the character reference starting at i, and returns the offset following it */
+  private int decodeReference(String html, int i) {
+    int n = html.length();
+    int end = i + 1;
+    Integer codePoint = null;
+    if (end < n && html.charAt(end) == '#') {
+      end++;
+      boolean hex = end < n && (html.charAt(end) == 'x' || html.charAt(end) == 'X');
+      if (hex)
+        end++;
+      int digitsStart = end;
+      while (end < n && Character.digit(html.charAt(end), hex ? 16 : 10) >= 0 && end - i < 12)
+        end++;
+      if (end > digitsStart) {
+        // at most 10 digits, so the value fits in a long, but not necessarily in an int
+        long value = Long.parseLong(html.substring(digitsStart, end), hex ? 16 : 10);
+        if (value <= Character.MAX_CODE_POINT
+                && (value < Character.MIN_SURROGATE || value > Character.MAX_SURROGATE))
+          codePoint = (int) value;
+      }
+    } else {
+      while (end < n && isAsciiLetter(html.charAt(end)))
+        end++;
+      while (end < n && html.charAt(end) >= '0' && html.charAt(end) <= '9')
+        end++;
+      codePoint = ENTITIES.get(html.substring(i + 1, end));
+    }
+    if (codePoint == null) {
+      append('&', i);
+      return i + 1;
+    }
+    // like Jsoup, accept references without the closing semicolon
+    if (end < n && html.charAt(end) == ';')
+      end++;
+    for (char c : Character.toChars(codePoint))
+      append(c, i);
+    return end;
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private void append(char c, int offset) {
+    if (isWhitespace(c)) {
+      space(offset);
+      return;
+    }
+    boolean sentenceStart = mPendingSpace && isSentenceEnd(mLastChar)
+            && (Character.isUpperCase(c) || Character.isDigit(c));
+    if (mPendingSpace) {
+      mPendingSpace = false;
+      write(' ', mPendingSpaceOffset);
+    }
+    mAtStart = false;
+    mLastWasSpace = false;
+    if (c <= '\32' || (c >= '\177' && c <= '\377'))
+      return;
+    if (sentenceStart || mPendingBoundary) {
+      mPendingBoundary = false;
+      addBoundary(mLength);
+    }
+    write(c, offset);
+    mLastChar = c;
+  }
+
+  private static boolean isSentenceEnd(char c) {
+    return c == '.' || c == '!' || c == '?';
+  }
+
+  private void addBoundary(int offset) {
+    if (mBoundaryCount > 0 && mBoundaries[mBoundaryCount - 1] == offset)
+      return;
+    if (mBoundaryCount == mBoundaries.length) {
+      int[] boundaries = new int[2 * mBoundaryCount];
+      System.arraycopy(mBoundaries, 0, boundaries, 0, mBoundaryCount);
+      mBoundaries = boundaries;
+    }
+    mBoundaries[mBoundaryCount++] = offset;
+  }
+
+  /* Collapses whitespace, and drops it at the start and end of the text */
+  private void space(int offset) {
+    if (!mAtStart && !mLastWasSpace) {
+      mPendingSpace = true;
+      mPendingSpaceOffset = offset;
+      mLastWasSpace = true;
+    }
+  }
+
+  private void write(char c, int offset) {
+    if (mLength == mText.length) {
+      char[] text = new char[2 * mLength];
+      System.arraycopy(mText, 0, text, 0, mLength);
+      mText = text;
+      int[] offsets = new int[2 * mLength + 1];
+      System.arraycopy(mOffsets, 0, offsets, 0, mLength);
+      mOffsets = offsets;
+    }
+    mText[mLength] = c;
+    mOffsets[mLength] = offset;
+    mLength++;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+
+  private static int indexOfIgnoreCase(String s, String target, int from) {
+    for (int i = from; i + target.length() <= s.length(); i++)
+      if (s.regionMatches(true, i, target, 0, target.length()))
+        return i;
+    return -1;
+  }
+}
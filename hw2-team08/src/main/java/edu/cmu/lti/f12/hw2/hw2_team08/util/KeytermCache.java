@@ -0,0 +1,223 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The KeytermCache class persists the keyterms one extractor configuration found for each
+ * question, so that later runs with the same configuration skip loading models and tagging the
+ * questions. All entries of a configuration live in one file, which is read once when the cache is
+ * opened and appended to as new questions are tagged.
+ *
+ * The file is named after the configuration's fingerprint, see {@link #open(File, String)}, so a
+ * change to the extractor's parameters or to the contents of its model files starts a new file
+ * instead of serving stale keyterms.
+ */
+public class KeytermCache {
+
+  /* Version of the on-disk format, part of the file names so old entries are ignored */
+  private static final int FORMAT_VERSION = 1;
+
+  private final File mFile;
+
+  private final Map<String, List<String>> mEntries = new HashMap<String, List<String>>();
+
+  private long mHits = 0;
+
+  private long mMisses = 0;
+
+  private KeytermCache(File file) {
+    mFile = file;
+  }
+
+  /**
+   * Opens the cache of the configuration in the directory, creating the directory if needed. The
+   * fingerprint identifies the configuration, e.g. the extractor class, its parameters and the
+   * hashes of its model files; it is hashed into the file name.
+   */
+  public static KeytermCache open(File directory, String fingerprint) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      System.err.println("Could not create keyterm cache directory: " + directory);
+      return new KeytermCache(null);
+    }
+    KeytermCache cache = new KeytermCache(new File(directory, md5(fingerprint) + ".keyterms.v"
+            + FORMAT_VERSION));
+    if (cache.mFile.isFile()) {
+      try {
+        cache.read();
+      } catch (IOException e) {
+        // appending could corrupt the file, so only keep the entries read in memory
+        System.err.println("Could not read keyterm cache " + cache.mFile + ": " + e);
+        KeytermCache memory = new KeytermCache(null);
+        memory.mEntries.putAll(cache.mEntries);
+        cache = memory;
+      }
+    }
+    return cache;
+  }
+
+  /* A cache which is not persisted, e.g. to hold keyterms extracted ahead of their questions */
+  public static KeytermCache inMemory() {
+    return new KeytermCache(null);
+  }
+
+  /* Whether the question is cached, without counting a hit or a miss */
+  public synchronized boolean contains(String question) {
+    return mEntries.containsKey(question);
+  }
+
+  /* Returns the keyterms cached for the question, or null, counting a hit or a miss */
+  public synchronized List<String> get(String question) {
+    List<String> keyterms = mEntries.get(question);
+    if (keyterms == null) {
+      mMisses++;
+    } else {
+      mHits++;
+    }
+    return keyterms;
+  }
+
+  public synchronized void put(String question, List<String> keyterms) {
+    keyterms = Collections.unmodifiableList(new ArrayList<String>(keyterms));
+    mEntries.put(question, keyterms);
+    if (mFile != null) {
+      try {
+        append(question, keyterms);
+      } catch (IOException e) {
+        System.err.println("Could not write keyterm cache " + mFile + ": " + e);
+      }
+    }
+  }
+
+  /*
+   * An entry holds the question, the number of keyterms and the keyterms. Entries are only ever
+   * appended, so a crash can only cut the last one short. Reading stops at the first entry which
+   * is truncated or malformed, and the file is cut back to the entries before it, so that new
+   * entries follow them.
+   */
+  private void read() throws IOException {
+    byte[] data = new byte[(int) mFile.length()];
+    DataInputStream file = new DataInputStream(new FileInputStream(mFile));
+    try {
+      file.readFully(data);
+    } finally {
+      file.close();
+    }
+
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    DataInputStream in = new DataInputStream(bytes);
+    int complete = 0;
+    try {
+      while (bytes.available() > 0) {
+        String question = in.readUTF();
+        int count = in.readInt();
+        // a keyterm takes at least 2 bytes, so a larger count cannot be read
+        if (count < 0 || count > bytes.available() / 2) {
+          break;
+        }
+        List<String> keyterms = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+          keyterms.add(in.readUTF());
+        }
+        mEntries.put(question, Collections.unmodifiableList(keyterms));
+        complete = data.length - bytes.available();
+      }
+    } catch (IOException e) {
+      // the entry is truncated, or its text is not valid modified UTF-8
+    } catch (RuntimeException e) {
+      // the entry is malformed in some other way
+    }
+    if (complete < data.length) {
+      System.err.println("Dropped " + (data.length - complete)
+              + " bytes of a truncated or malformed entry from keyterm cache " + mFile);
+      RandomAccessFile out = new RandomAccessFile(mFile, "rw");
+      try {
+        out.setLength(complete);
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private void append(String question, List<String> keyterms) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+            mFile, true)));
+    try {
+      out.writeUTF(question);
+      out.writeInt(keyterms.size());
+      for (String keyterm : keyterms) {
+        out.writeUTF(keyterm);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /* MD5 hash of the file's contents, for fingerprints which depend on a model file */
+  public static String md5(File file) throws IOException {
+    return md5(new BufferedInputStream(new FileInputStream(file)));
+  }
+
+  /* MD5 hash of the rest of the stream, e.g. a classpath resource, which is then closed */
+  public static String md5(InputStream in) throws IOException {
+    MessageDigest digest = newDigest();
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    return hex(digest.digest());
+  }
+
+  /* MD5 hash of the text, in hex, e.g. to name a file after a configuration */
+  public static String md5(String text) {
+    try {
+      return hex(newDigest().digest(text.getBytes("UTF-8")));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] digest) {
+    StringBuilder sb = new StringBuilder(2 * digest.length);
+    for (byte b : digest) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "KeytermCache: " + mHits + " hits, " + mMisses + " misses"
+            + (mFile == null ? "" : " (" + mFile + ")");
+  }
+}
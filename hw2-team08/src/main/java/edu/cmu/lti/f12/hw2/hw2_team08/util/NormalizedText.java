@@ -0,0 +1,74 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * The NormalizedText class holds the plain text extracted from a document's HTML together with a
+ * map from offsets in the plain text back to offsets in the HTML.
+ *
+ * A span <code>[begin, end)</code> of the text corresponds to the span
+ * <code>[getRawOffset(begin), getRawOffset(end))</code> of the HTML, which runs from the first
+ * character of the span up to the next character of text, so it includes any markup in between.
+ *
+ * It also holds the offsets in the text where paragraphs and sentences begin, in increasing order
+ * and always including 0 and the length of the text, which passage extractors can use to align
+ * passages with sentences.
+ */
+public class NormalizedText {
+
+  private final String mText;
+
+  private final int[] mRawOffsets;
+
+  private final int[] mBoundaries;
+
+  /* rawOffsets holds one offset per character of text, plus the length of the HTML */
+  public NormalizedText(String text, int[] rawOffsets) {
+    this(text, rawOffsets, new int[] { 0, text.length() });
+  }
+
+  public NormalizedText(String text, int[] rawOffsets, int[] boundaries) {
+    if (rawOffsets.length != text.length() + 1) {
+      throw new IllegalArgumentException("Expected " + (text.length() + 1) + " offsets, got "
+              + rawOffsets.length);
+    }
+    if (boundaries.length < 1 || boundaries[0] != 0
+            || boundaries[boundaries.length - 1] != text.length()) {
+      throw new IllegalArgumentException("Boundaries must start at 0 and end at " + text.length());
+    }
+    mText = text;
+    mRawOffsets = rawOffsets;
+    mBoundaries = boundaries;
+  }
+
+  public String getText() {
+    return mText;
+  }
+
+  public int length() {
+    return mText.length();
+  }
+
+  /* Maps an offset in the text, between 0 and length() inclusive, to an offset in the HTML */
+  public int getRawOffset(int offset) {
+    return mRawOffsets[offset];
+  }
+
+  int[] getRawOffsets() {
+    return mRawOffsets;
+  }
+
+  /* The sentence and paragraph boundaries; the array must not be modified */
+  public int[] getBoundaries() {
+    return mBoundaries;
+  }
+
+  /* Returns a copy of the passage with its offsets mapped to the HTML */
+  public PassageCandidate toRawPassage(PassageCandidate passage)
+          throws AnalysisEngineProcessException {
+    return new PassageCandidate(passage.getDocID(), getRawOffset(passage.getStart()),
+            getRawOffset(passage.getEnd()), passage.getProbability(), passage.getQueryString());
+  }
+}
@@ -0,0 +1,47 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the lines of a UTF-8 text file named in a configuration parameter. Paths starting with
+ * <code>classpath:</code> are read from the classpath, as in the persistence providers'
+ * <code>PathPattern</code>, and others from the file system.
+ */
+public class ResourceLines {
+
+  private static final String CLASSPATH_PREFIX = "classpath:";
+
+  private ResourceLines() {
+  }
+
+  public static List<String> read(String path) throws IOException {
+    InputStream in;
+    if (path.startsWith(CLASSPATH_PREFIX)) {
+      String resource = path.substring(CLASSPATH_PREFIX.length());
+      in = ResourceLines.class.getResourceAsStream(resource);
+      if (in == null) {
+        throw new IOException("Resource not found: " + resource);
+      }
+    } else {
+      in = new FileInputStream(new File(path));
+    }
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+}
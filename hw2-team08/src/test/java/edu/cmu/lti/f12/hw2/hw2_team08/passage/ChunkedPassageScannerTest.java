@@ -0,0 +1,90 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.junit.Test;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+import edu.cmu.lti.oaqa.openqa.hello.passage.KeytermWindowScorer;
+
+/**
+ * Checks that scanning a long document in segments gives the same passages as scanning it in one
+ * go, once the windows are merged.
+ */
+public class ChunkedPassageScannerTest {
+
+  private static final String[] KEYTERMS = { "p53", "apoptosis", "tumor suppressor", "mdm2" };
+
+  private static final String[] FILLERS = { "the", "protein", "of", "cells", "in", "cancer",
+      "is", "and", "pathway", "regulates" };
+
+  /* Uses every argument, so that any difference in what the windows are scored from shows */
+  private static final KeytermWindowScorer SCORER = new KeytermWindowScorer() {
+    public double scoreWindow(int begin, int end, int matchesFound, int totalMatches,
+            int keytermsFound, int totalKeyterms, int textSize) {
+      return (double) matchesFound / totalMatches + (double) keytermsFound / totalKeyterms
+              - (double) (end - begin) / textSize;
+    }
+  };
+
+  private static String randomDocument(Random random, int length) {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < length) {
+      if (random.nextInt(6) == 0)
+        sb.append(KEYTERMS[random.nextInt(KEYTERMS.length)]);
+      else
+        sb.append(FILLERS[random.nextInt(FILLERS.length)]);
+      sb.append(random.nextInt(10) == 0 ? ". " : " ");
+    }
+    return sb.toString();
+  }
+
+  private static String describe(List<PassageCandidate> passages) {
+    StringBuilder sb = new StringBuilder();
+    for (PassageCandidate pc : passages) {
+      sb.append('[').append(pc.getStart()).append(',').append(pc.getEnd()).append(")=")
+              .append(pc.getProbability()).append(' ');
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void mergedPassagesDoNotDependOnSegments() throws AnalysisEngineProcessException {
+    Random random = new Random(5);
+    KeytermMatcher matcher = new KeytermMatcher(KEYTERMS);
+    ChunkedPassageScanner whole = new ChunkedPassageScanner(0, 0);
+    ChunkedPassageScanner chunked = new ChunkedPassageScanner(200, 50);
+    for (int i = 0; i < 20; i++) {
+      String text = randomDocument(random, 1500);
+      List<PassageCandidate> expected = NoOverlapsPassageCandidateFinder.mergePassages(whole
+              .scan("doc", text, matcher, SCORER));
+      List<PassageCandidate> actual = NoOverlapsPassageCandidateFinder.mergePassages(chunked
+              .scan("doc", text, matcher, SCORER));
+      assertTrue(expected.size() > 0);
+      assertEquals(text, describe(expected), describe(actual));
+    }
+  }
+
+  @Test
+  public void windowsAreScoredAsInTheWholeDocument() throws AnalysisEngineProcessException {
+    Random random = new Random(7);
+    KeytermMatcher matcher = new KeytermMatcher(KEYTERMS);
+    String text = randomDocument(random, 1500);
+    Map<Long, Float> scores = new HashMap<Long, Float>();
+    for (PassageCandidate pc : new ChunkedPassageScanner(0, 0).scan("doc", text, matcher, SCORER))
+      scores.put(((long) pc.getStart() << 32) | pc.getEnd(), pc.getProbability());
+    List<PassageCandidate> windows = new ChunkedPassageScanner(200, 50).scan("doc", text, matcher,
+            SCORER);
+    assertTrue(windows.size() > 0);
+    for (PassageCandidate pc : windows)
+      assertEquals(pc.toString(), scores.get(((long) pc.getStart() << 32) | pc.getEnd()),
+              Float.valueOf(pc.getProbability()));
+  }
+}
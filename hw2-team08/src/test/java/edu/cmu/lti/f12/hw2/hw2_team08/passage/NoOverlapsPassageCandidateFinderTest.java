@@ -0,0 +1,124 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.junit.Test;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Checks that {@link NoOverlapsPassageCandidateFinder#mergePassages(List)} returns exactly what
+ * the original pairwise loop returned, on random lists of plain passages with many overlapping,
+ * abutting and duplicate passages. The loop compared passages with <code>equals</code>; the
+ * finder never yields two windows with the same offsets, so there that is the same as comparing
+ * offsets, which is what the reference below does, and what mergePassages does for any input.
+ */
+public class NoOverlapsPassageCandidateFinderTest {
+
+  private static boolean sameOffsets(PassageCandidate pc1, PassageCandidate pc2) {
+    return pc1.getStart() == pc2.getStart() && pc1.getEnd() == pc2.getEnd();
+  }
+
+  /* The loop mergePassages replaced, kept as the reference */
+  private static List<PassageCandidate> pairwiseMerge(List<PassageCandidate> passages)
+          throws AnalysisEngineProcessException {
+    List<PassageCandidate> toIgnore = new LinkedList<PassageCandidate>();
+    List<PassageCandidate> toAdd = new LinkedList<PassageCandidate>();
+    for (PassageCandidate pc1 : passages) {
+      for (PassageCandidate pc2 : passages) {
+        if (sameOffsets(pc1, pc2))
+          break;
+        if (pc1.getStart() >= pc2.getStart() && pc1.getEnd() <= pc2.getEnd()) {
+          toIgnore.add(pc2);
+        } else if (pc1.getStart() == pc2.getEnd()) {
+          toAdd.add(new PassageCandidate(pc1.getDocID(), pc2.getStart(), pc1.getEnd(), Math.max(
+                  pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
+          toIgnore.add(pc1);
+          toIgnore.add(pc2);
+        } else if (pc1.getEnd() == pc2.getStart()) {
+          toAdd.add(new PassageCandidate(pc1.getDocID(), pc1.getStart(), pc2.getEnd(), Math.max(
+                  pc1.getProbability(), pc2.getProbability()), pc1.getQueryString()));
+          toIgnore.add(pc1);
+          toIgnore.add(pc2);
+        }
+      }
+    }
+    // removeAll, dropping every passage with the offsets of an ignored one
+    List<PassageCandidate> result = new ArrayList<PassageCandidate>();
+    for (PassageCandidate pc : passages) {
+      boolean ignored = false;
+      for (PassageCandidate other : toIgnore)
+        ignored |= sameOffsets(pc, other);
+      if (!ignored)
+        result.add(pc);
+    }
+    result.addAll(toAdd);
+    return result;
+  }
+
+  private static List<PassageCandidate> randomPassages(Random random)
+          throws AnalysisEngineProcessException {
+    int n = random.nextInt(30);
+    int range = 5 + random.nextInt(30);
+    List<PassageCandidate> passages = new ArrayList<PassageCandidate>();
+    for (int i = 0; i < n; i++) {
+      if (i > 0 && random.nextInt(8) == 0) {
+        // the same passage object again
+        passages.add(passages.get(random.nextInt(i)));
+        continue;
+      }
+      int start = random.nextInt(range);
+      int end = start + random.nextInt(8);
+      passages.add(new PassageCandidate("doc", start, end, random.nextInt(3), "query"));
+    }
+    return passages;
+  }
+
+  private static String describe(List<PassageCandidate> passages) {
+    StringBuilder sb = new StringBuilder();
+    for (PassageCandidate pc : passages) {
+      sb.append('[').append(pc.getStart()).append(',').append(pc.getEnd()).append(")=")
+              .append(pc.getProbability()).append(' ');
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void matchesPairwiseMerge() throws AnalysisEngineProcessException {
+    Random random = new Random(11);
+    for (int i = 0; i < 20000; i++) {
+      List<PassageCandidate> passages = randomPassages(random);
+      String input = describe(passages);
+      List<PassageCandidate> merged = NoOverlapsPassageCandidateFinder.mergePassages(passages);
+      assertEquals(input, describe(pairwiseMerge(passages)), describe(merged));
+    }
+  }
+
+  @Test
+  public void dropsConsumedAndMergesAbuttingPassages() throws AnalysisEngineProcessException {
+    List<PassageCandidate> passages = new ArrayList<PassageCandidate>();
+    passages.add(new PassageCandidate("doc", 0, 10, 1, null));
+    passages.add(new PassageCandidate("doc", 2, 5, 2, null));
+    passages.add(new PassageCandidate("doc", 20, 30, 1, null));
+    passages.add(new PassageCandidate("doc", 30, 35, 3, null));
+    assertEquals("[2,5)=2.0 [20,35)=3.0 ", describe(NoOverlapsPassageCandidateFinder
+            .mergePassages(passages)));
+  }
+
+  @Test
+  public void duplicatesAreDroppedTogether() throws AnalysisEngineProcessException {
+    List<PassageCandidate> passages = new ArrayList<PassageCandidate>();
+    passages.add(new PassageCandidate("doc", 0, 10, 1, null));
+    passages.add(new PassageCandidate("doc", 2, 5, 2, null));
+    passages.add(new PassageCandidate("doc", 0, 10, 1, null));
+    assertEquals(describe(pairwiseMerge(passages)), describe(NoOverlapsPassageCandidateFinder
+            .mergePassages(passages)));
+    assertEquals("[2,5)=2.0 ", describe(NoOverlapsPassageCandidateFinder.mergePassages(passages)));
+  }
+}
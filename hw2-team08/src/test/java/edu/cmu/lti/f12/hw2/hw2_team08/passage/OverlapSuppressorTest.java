@@ -0,0 +1,82 @@
+package edu.cmu.lti.f12.hw2.hw2_team08.passage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.junit.Test;
+
+import edu.cmu.lti.oaqa.framework.data.PassageCandidate;
+
+/**
+ * Checks that {@link OverlapSuppressor#suppress(List)} returns exactly what the loop of
+ * EhnKeytermPassageExtractor it replaced returned.
+ */
+public class OverlapSuppressorTest {
+
+  /* The loop suppress replaced, kept as the reference */
+  private static List<PassageCandidate> removeOverlappingPassages(
+          List<PassageCandidate> passages, double overlapThreshold) {
+    boolean[] overlapping = new boolean[passages.size()];
+    for (int i = 0; i < passages.size(); i++) {
+      if (overlapping[i])
+        continue;
+      PassageCandidate p1 = passages.get(i);
+      for (int j = i + 1; j < passages.size(); j++) {
+        PassageCandidate p2 = passages.get(j);
+        double overlapRatio = OverlapSuppressor.overlapRatio(p1, p2);
+        if (overlapRatio > overlapThreshold)
+          if (p1.getProbability() >= p2.getProbability()) {
+            overlapping[j] = true;
+          } else {
+            overlapping[i] = true;
+          }
+      }
+    }
+    List<PassageCandidate> newResult = new ArrayList<PassageCandidate>();
+    for (int i = 0; i < passages.size(); i++)
+      if (!overlapping[i])
+        newResult.add(passages.get(i));
+    return newResult;
+  }
+
+  private static String describe(List<PassageCandidate> passages) {
+    StringBuilder sb = new StringBuilder();
+    for (PassageCandidate pc : passages) {
+      sb.append('[').append(pc.getStart()).append(',').append(pc.getEnd()).append(")=")
+              .append(pc.getProbability()).append(' ');
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void matchesTheOriginalLoop() throws AnalysisEngineProcessException {
+    Random random = new Random(3);
+    double[] thresholds = { -1.0, 0.0, 0.2, 0.5, 0.8, 1.0 };
+    for (int i = 0; i < 20000; i++) {
+      int n = random.nextInt(40);
+      int range = 5 + random.nextInt(60);
+      List<PassageCandidate> passages = new ArrayList<PassageCandidate>();
+      for (int k = 0; k < n; k++) {
+        int start = random.nextInt(range);
+        int end = start + random.nextInt(20);
+        passages.add(new PassageCandidate("doc", start, end, random.nextInt(4), null));
+      }
+      double threshold = thresholds[random.nextInt(thresholds.length)];
+      assertEquals(describe(passages) + "at " + threshold, describe(removeOverlappingPassages(
+              passages, threshold)), describe(new OverlapSuppressor(threshold).suppress(passages)));
+    }
+  }
+
+  @Test
+  public void droppedPassagesStillDropLaterOnes() throws AnalysisEngineProcessException {
+    List<PassageCandidate> passages = new ArrayList<PassageCandidate>();
+    passages.add(new PassageCandidate("doc", 10, 30, 0.5f, null));
+    passages.add(new PassageCandidate("doc", 0, 20, 0.9f, null));
+    passages.add(new PassageCandidate("doc", 20, 40, 0.3f, null));
+    assertEquals("[0,20)=0.9 ", describe(new OverlapSuppressor(0.2).suppress(passages)));
+  }
+}